@@ -0,0 +1,240 @@
+package src.cache;
+
+import src.data.Data;
+import src.exceptions.NoDataException;
+import src.metrics.Phase;
+import src.metrics.ServerMetrics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cache, condivisa da tutti i client del server, dei dataset letti dalle tabelle del database.
+ * <p>
+ * Un dataset viene letto una sola volta anche se più client lo richiedono contemporaneamente, e resta
+ * in memoria insieme alla sua matrice delle distanze, una volta calcolata, per le richieste successive.
+ * Chi ottiene un dataset con {@link #acquire(String, String)} deve rilasciarlo chiudendo il
+ * {@link Lease} restituito: finché un dataset è in uso non viene eliminato dalla cache.
+ * </p>
+ * <p>
+ * Ogni dataset è associato all'impronta della tabella al momento della lettura (si veda
+ * {@link src.database.TableData#getFingerprint(String)}): se l'impronta attuale è diversa il dataset
+ * viene letto di nuovo. Una lettura fallita non viene memorizzata, per cui la richiesta successiva ripete la
+ * lettura. La memoria occupata dai dataset non in uso è limitata dalla proprietà di sistema
+ * {@code tonymap.dataCache.maxBytes} (di default un quarto della memoria massima della JVM): superato il
+ * limite vengono eliminati quelli utilizzati meno di recente.
+ * </p>
+ */
+public class DataCache {
+
+    /** Cache condivisa dal server */
+    private static final DataCache SHARED = new DataCache(Long.getLong("tonymap.dataCache.maxBytes",
+            Runtime.getRuntime().maxMemory() / 4));
+
+    /** Memoria massima occupata dai dataset, in byte */
+    private final long maxBytes;
+
+    /** Memoria occupata dai dataset, in byte */
+    private long usedBytes;
+
+    /** Dataset memorizzati per nome della tabella, dal meno al più recentemente utilizzato */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Dataset memorizzato, eventualmente ancora in lettura.
+     */
+    private static final class Entry {
+        /** Nome della tabella */
+        private final String table;
+
+        /** Impronta della tabella al momento della lettura */
+        private final String fingerprint;
+
+        /** Dataset letto dalla tabella, completato dal primo client che lo ha richiesto */
+        private final CompletableFuture<Data> data = new CompletableFuture<>();
+
+        /** Numero di client che stanno utilizzando il dataset */
+        private int references;
+
+        /** Memoria occupata dal dataset, aggiornata a ogni rilascio */
+        private long bytes;
+
+        Entry(String table, String fingerprint) {
+            this.table = table;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Utilizzo di un dataset della cache, da chiudere quando il dataset non serve più.
+     */
+    public final class Lease implements AutoCloseable {
+        /** Dataset in uso */
+        private final Entry entry;
+
+        /** Indica se il dataset è già stato rilasciato */
+        private boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * Restituisce il dataset in uso
+         * @return dataset letto dalla tabella
+         */
+        public Data getData() {
+            return entry.data.join();
+        }
+
+        /**
+         * Rilascia il dataset; le chiamate successive alla prima non hanno effetto.
+         */
+        @Override
+        public void close() {
+            synchronized (DataCache.this) {
+                if (!closed) {
+                    closed = true;
+                    release(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Crea una cache con il limite di memoria indicato
+     * @param maxBytes memoria massima occupata dai dataset non in uso, in byte
+     */
+    public DataCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Restituisce la cache condivisa dal server
+     * @return cache dei dataset
+     */
+    public static DataCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Restituisce il dataset della tabella indicata, leggendolo dal database se non è presente nella cache
+     * o se la tabella è cambiata. Se un altro client sta già leggendo la stessa tabella, si attende la sua
+     * lettura anziché ripeterla.
+     * @param table nome della tabella
+     * @param fingerprint impronta attuale della tabella; se null il dataset viene letto senza memorizzarlo
+     * @return utilizzo del dataset, da chiudere al termine
+     * @throws NoDataException se la lettura della tabella fallisce
+     */
+    public Lease acquire(String table, String fingerprint) throws NoDataException {
+        Entry entry;
+        boolean load = false;
+        synchronized (this) {
+            entry = entries.get(table);
+            if (entry != null && !entry.fingerprint.equals(fingerprint)) {
+                remove(table, entry);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(table, fingerprint);
+                if (fingerprint != null) {
+                    entries.put(table, entry);
+                }
+                load = true;
+            }
+            entry.references++;
+        }
+
+        if (load) {
+            long start = System.nanoTime();
+            try {
+                Data data = new Data(table);
+                if (data.getNumberOfExample() == 0) {
+                    // un dataset vuoto non va mai memorizzato: renderebbe inutilizzabile la tabella
+                    throw new NoDataException("Errore nel contenuto della tabella.");
+                }
+                entry.data.complete(data);
+            } catch (NoDataException | RuntimeException e) {
+                entry.data.completeExceptionally(e);
+            } finally {
+                ServerMetrics.shared().record(Phase.DB_LOAD, start);
+            }
+        }
+
+        try {
+            entry.data.get();
+        } catch (InterruptedException | ExecutionException e) {
+            synchronized (this) {
+                remove(table, entry);
+                release(entry);
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                throw new NoDataException("Lettura della tabella " + table + " interrotta");
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof NoDataException) {
+                throw (NoDataException) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+        return new Lease(entry);
+    }
+
+    /**
+     * Elimina il dataset della tabella indicata; chi lo sta utilizzando può continuare a farlo.
+     * @param table nome della tabella
+     */
+    public synchronized void invalidate(String table) {
+        Entry entry = entries.get(table);
+        if (entry != null) {
+            remove(table, entry);
+        }
+    }
+
+    /**
+     * Rilascia un utilizzo del dataset e, se non è più in uso, ne aggiorna la memoria occupata ed
+     * elimina i dataset meno recenti in eccesso.
+     * @param entry dataset rilasciato
+     */
+    private void release(Entry entry) {
+        entry.references--;
+        if (entry.references > 0 || entries.get(entry.table) != entry) {
+            return;
+        }
+        long bytes = entry.data.isCompletedExceptionally() ? 0L : entry.data.join().getMemoryFootprint();
+        usedBytes += bytes - entry.bytes;
+        entry.bytes = bytes;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            Entry e = eldest.next().getValue();
+            if (e.references == 0) {
+                usedBytes -= e.bytes;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Elimina dalla cache il dataset della tabella, se è ancora quello indicato
+     * @param table nome della tabella
+     * @param entry dataset da eliminare
+     */
+    private void remove(String table, Entry entry) {
+        if (entries.remove(table, entry)) {
+            usedBytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * Restituisce una descrizione dello stato della cache
+     * @return numero di dataset e memoria occupata
+     */
+    public synchronized String toString() {
+        return "dataset=" + entries.size() + " byte=" + usedBytes + "/" + maxBytes;
+    }
+}
@@ -0,0 +1,165 @@
+package src.cache;
+
+import src.clustering.HierachicalClusterMiner;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache, condivisa da tutti i client del server, dei dendrogrammi già calcolati a partire da una tabella
+ * del database.
+ * <p>
+ * Ogni risultato è identificato dalla tabella, dalla profondità richiesta e dal tipo di distanza, ed è
+ * associato all'impronta della tabella al momento del calcolo (si veda
+ * {@link src.database.TableData#getFingerprint(String)}): se l'impronta attuale è diversa, la tabella è
+ * cambiata e il risultato viene scartato.
+ * </p>
+ * <p>
+ * La memoria occupata dai risultati è limitata dalla proprietà di sistema {@code tonymap.cache.maxBytes}
+ * (di default un ottavo della memoria massima della JVM, 0 per disattivare la cache): superato il limite
+ * vengono eliminati i risultati utilizzati meno di recente.
+ * </p>
+ */
+public class ResultCache {
+
+    /** Cache condivisa dal server */
+    private static final ResultCache SHARED = new ResultCache(Long.getLong("tonymap.cache.maxBytes",
+            Runtime.getRuntime().maxMemory() / 8));
+
+    /** Memoria massima occupata dai risultati, in byte */
+    private final long maxBytes;
+
+    /** Memoria occupata dai risultati, in byte */
+    private long usedBytes;
+
+    /** Risultati memorizzati, dal meno al più recentemente utilizzato */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Numero di richieste soddisfatte dalla cache */
+    private long hits;
+
+    /** Numero di richieste non soddisfatte dalla cache */
+    private long misses;
+
+    /**
+     * Chiave di un risultato.
+     *
+     * @param table nome della tabella
+     * @param depth profondità richiesta
+     * @param linkMode tipo di distanza tra cluster
+     */
+    private record Key(String table, int depth, int linkMode) {
+    }
+
+    /**
+     * Risultato memorizzato.
+     *
+     * @param miner dendrogramma calcolato
+     * @param fingerprint impronta della tabella al momento del calcolo
+     * @param bytes memoria occupata dal dendrogramma
+     */
+    private record Entry(HierachicalClusterMiner miner, String fingerprint, long bytes) {
+    }
+
+    /**
+     * Crea una cache con il limite di memoria indicato
+     * @param maxBytes memoria massima occupata dai risultati, in byte
+     */
+    public ResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Restituisce la cache condivisa dal server
+     * @return cache dei risultati
+     */
+    public static ResultCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Restituisce il risultato calcolato per la tabella, la profondità e la distanza indicate, se la
+     * tabella non è cambiata da allora.
+     * @param table nome della tabella
+     * @param depth profondità richiesta
+     * @param linkMode tipo di distanza tra cluster
+     * @param fingerprint impronta attuale della tabella, null se non è nota
+     * @return vista sul dendrogramma memorizzato, oppure null se non è presente o non è più valido
+     */
+    public synchronized HierachicalClusterMiner get(String table, int depth, int linkMode, String fingerprint) {
+        Key key = new Key(table, depth, linkMode);
+        Entry entry = entries.get(key);
+        if (entry == null || fingerprint == null || !entry.fingerprint().equals(fingerprint)) {
+            if (entry != null) {
+                remove(key);
+            }
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.miner().view();
+    }
+
+    /**
+     * Memorizza un risultato, eliminando se necessario quelli utilizzati meno di recente.
+     * I risultati più grandi del limite di memoria e quelli senza impronta non vengono memorizzati.
+     * @param table nome della tabella
+     * @param depth profondità richiesta
+     * @param linkMode tipo di distanza tra cluster
+     * @param fingerprint impronta della tabella letta prima del caricamento dei dati
+     * @param miner dendrogramma calcolato
+     */
+    public synchronized void put(String table, int depth, int linkMode, String fingerprint, HierachicalClusterMiner miner) {
+        Objects.requireNonNull(miner);
+        long bytes = miner.getMemoryFootprint();
+        if (fingerprint == null || bytes > maxBytes) {
+            return;
+        }
+        Key key = new Key(table, depth, linkMode);
+        remove(key);
+        entries.put(key, new Entry(miner.view(), fingerprint, bytes));
+        usedBytes += bytes;
+
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            usedBytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Elimina tutti i risultati calcolati a partire dalla tabella indicata
+     * @param table nome della tabella
+     */
+    public synchronized void invalidate(String table) {
+        Iterator<Map.Entry<Key, Entry>> i = entries.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<Key, Entry> e = i.next();
+            if (e.getKey().table().equals(table)) {
+                usedBytes -= e.getValue().bytes();
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Elimina il risultato associato alla chiave, se presente
+     * @param key chiave del risultato
+     */
+    private void remove(Key key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            usedBytes -= old.bytes();
+        }
+    }
+
+    /**
+     * Restituisce una descrizione dello stato della cache
+     * @return numero di risultati, memoria occupata e richieste soddisfatte
+     */
+    public synchronized String toString() {
+        return "risultati=" + entries.size() + " byte=" + usedBytes + "/" + maxBytes + " hit=" + hits + " miss=" + misses;
+    }
+}
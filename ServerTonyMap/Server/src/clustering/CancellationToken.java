@@ -0,0 +1,95 @@
+package src.clustering;
+
+import src.exceptions.MiningCancelledException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Richiesta di interruzione di un clustering, controllata periodicamente dalle strategie di
+ * clustering e dal calcolo delle distanze.
+ * <p>
+ * Un clustering viene interrotto quando il token viene annullato con {@link #cancel()}, quando scade
+ * il tempo massimo indicato alla creazione oppure quando viene interrotto il thread che lo esegue.
+ * </p>
+ */
+public class CancellationToken {
+
+    /** Indica se il token è stato annullato */
+    private volatile boolean cancelled;
+
+    /** Istante, secondo {@link System#nanoTime()}, oltre il quale il clustering va interrotto */
+    private final long deadline;
+
+    /** Indica se è stato fissato un tempo massimo */
+    private final boolean hasDeadline;
+
+    /**
+     * Crea un token senza tempo massimo, che interrompe il clustering solo se annullato
+     */
+    public CancellationToken() {
+        this(0L);
+    }
+
+    /**
+     * Crea un token che interrompe il clustering allo scadere del tempo indicato
+     * @param timeoutMillis tempo massimo in millisecondi; se non positivo non c'è tempo massimo
+     */
+    private CancellationToken(long timeoutMillis) {
+        hasDeadline = timeoutMillis > 0;
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(timeoutMillis, 0L));
+    }
+
+    /**
+     * Crea un token con tempo massimo
+     * @param timeoutMillis tempo massimo in millisecondi a partire da ora; se non positivo non c'è tempo massimo
+     * @return nuovo token
+     */
+    public static CancellationToken withTimeout(long timeoutMillis) {
+        return new CancellationToken(timeoutMillis);
+    }
+
+    /**
+     * Richiede l'interruzione del clustering
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Indica se è scaduto il tempo massimo
+     * @return {@code true} se il token ha un tempo massimo e questo è trascorso
+     */
+    public boolean isExpired() {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Indica se il clustering va interrotto
+     * @return {@code true} se il token è stato annullato, se è scaduto il tempo massimo oppure se il
+     *         thread corrente è stato interrotto
+     */
+    public boolean isCancelled() {
+        return cancelled || isExpired() || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Solleva un'eccezione se il clustering va interrotto
+     * @throws MiningCancelledException se il token è stato annullato, è scaduto o il thread è stato interrotto
+     */
+    public void throwIfCancelled() throws MiningCancelledException {
+        if (isCancelled()) {
+            throw new MiningCancelledException(getReason());
+        }
+    }
+
+    /**
+     * Restituisce il motivo dell'interruzione
+     * @return descrizione del motivo per cui il clustering va interrotto
+     */
+    public String getReason() {
+        if (isExpired() && !cancelled) {
+            return "Clustering interrotto: superato il tempo massimo";
+        }
+        return "Clustering annullato";
+    }
+}
@@ -2,52 +2,115 @@ package src.clustering;
 
 import src.data.Data;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeSet;
 
 //**********************************************************************************
 // Interfacce implementate:
-// Iterable: Per poter utilizzare L'iteratore sulla collection di tipo Set clusterdata
+// Iterable: Per poter utilizzare L'iteratore sugli indici del cluster
 // Clonable: Per poter creare una copia non superficiale dell'oggetto
 // Serializable: Per poter serializzare e quindi salvare su file la classe
 //**********************************************************************************
 
 /**
  * La classe Cluster rappresenta un insieme di indici interi (clusteredData)
- * implementata utilizzando una struttura dati {@link TreeSet} per garantire
+ * implementato con un array di tipo primitivo ordinato in modo crescente, che garantisce
  * l'unicità e l'ordinamento naturale degli elementi.
  * <p>
+ * La fusione di due cluster ({@link #mergeCluster(Cluster)}) richiede tempo costante: il nuovo
+ * cluster ricorda i due cluster di partenza e costruisce il proprio array, fondendo quelli già
+ * ordinati, solo al primo accesso agli elementi. I cluster dei livelli di un dendrogramma mai
+ * visitati non vengono quindi mai costruiti.
+ * </p>
+ * <p>
  * La classe implementa le seguenti interfacce:
  * <ul>
  * <li>{@link Iterable}: per permettere l'iterazione sugli elementi del cluster.</li>
  * <li>{@link Cloneable}: per creare una copia non superficiale del cluster.</li>
  * <li>{@link Serializable}: per abilitare la serializzazione dell'oggetto.</li>
  * </ul>
+ * Nella serializzazione gli indici sono scritti come {@link TreeSet}, lo stesso formato delle
+ * versioni precedenti, per cui i file .HCM già salvati restano leggibili.
  */
 public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 
 	/**
-	 * Insieme degli indici che appartengono al cluster.
-	 * Utilizza un {@link TreeSet} per garantire l'unicità e l'ordinamento.
+	 * Identificativo di versione per la serializzazione, fissato per mantenere leggibili
+	 * i dendrogrammi già salvati su file.
+	 */
+	private static final long serialVersionUID = 7329639231295123026L;
+
+	/**
+	 * Campi scritti dalla serializzazione: l'insieme degli indici del cluster.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("clusteredData", Set.class)
+	};
+
+	/**
+	 * Indici che appartengono al cluster, in ordine crescente; solo le prime {@code size}
+	 * posizioni sono significative. Vale null finché il cluster ottenuto da una fusione non
+	 * viene costruito.
+	 */
+	private int[] clusteredData = new int[1];
+
+	/**
+	 * Numero di indici del cluster.
 	 */
-	private Set<Integer> clusteredData = new TreeSet<>();
+	private int size;
+
+	/**
+	 * Indice minimo del cluster, mantenuto anche per le fusioni non ancora costruite.
+	 */
+	private int first = Integer.MAX_VALUE;
+
+	/**
+	 * Cluster di partenza di una fusione non ancora costruita, null negli altri casi.
+	 */
+	private Cluster pendingLeft;
+
+	/**
+	 * Cluster di partenza di una fusione non ancora costruita, null negli altri casi.
+	 */
+	private Cluster pendingRight;
 
 	/**
 	 * Implementazione del metodo virtuale {@code iterator} presente nell'interfaccia {@link Iterable}.
 	 *
-	 * @return Iteratore per la Collection di tipo {@link TreeSet} clusteredData.
+	 * @return Iteratore sugli indici del cluster, in ordine crescente.
 	 */
 	public Iterator<Integer> iterator() {
-		return clusteredData.iterator();
+		int[] data = members();
+		int length = size;
+		return new Iterator<Integer>() {
+			private int index = 0;
+
+			public boolean hasNext() {
+				return index < length;
+			}
+
+			public Integer next() {
+				if (index >= length) {
+					throw new NoSuchElementException();
+				}
+				return data[index++];
+			}
+		};
 	}
 
 	//*************************************************************************
-	// L'implementazione del metodo addData è stata sostituita dal metodo add
-	// presente nell'interfaccia Set e implementato in TreeSet
-	// Poiché rispecchia tutte le proprietà che necessita il tipo di dato
-	// Tra cui: l'unicità degli elementi
+	// L'implementazione del metodo addData mantiene l'array ordinato e privo
+	// di duplicati, come faceva il metodo add dell'interfaccia Set
 	//*************************************************************************
 
 	/**
@@ -55,8 +118,33 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 	 *
 	 * @param id Indice da aggiungere.
 	 */
-	public void addData(int id) {
-		clusteredData.add(id);
+	public synchronized void addData(int id) {
+		int[] data = members();
+		if (size > 0 && data[size - 1] >= id) {
+			int position = Arrays.binarySearch(data, 0, size, id);
+			if (position >= 0) {
+				return;
+			}
+			insert(-position - 1, id);
+		} else {
+			insert(size, id);
+		}
+	}
+
+	/**
+	 * Inserisce un indice nella posizione indicata, ingrandendo l'array se necessario.
+	 *
+	 * @param position Posizione in cui inserire l'indice.
+	 * @param id Indice da inserire.
+	 */
+	private void insert(int position, int id) {
+		if (size == clusteredData.length) {
+			clusteredData = Arrays.copyOf(clusteredData, Math.max(1, size * 2));
+		}
+		System.arraycopy(clusteredData, position, clusteredData, position + 1, size - position);
+		clusteredData[position] = id;
+		size++;
+		first = clusteredData[0];
 	}
 
 	/**
@@ -65,7 +153,16 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 	 * @return Dimensione del cluster.
 	 */
 	public int getSize() {
-		return clusteredData.size();
+		return size;
+	}
+
+	/**
+	 * Restituisce l'indice minimo del cluster, senza costruire una fusione in sospeso.
+	 *
+	 * @return Indice minimo del cluster.
+	 */
+	int first() {
+		return first;
 	}
 
 	/**
@@ -77,7 +174,9 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 	public Object clone() {
 		try {
 			Cluster cloned = (Cluster) super.clone();
-			cloned.clusteredData = new TreeSet<>(this.clusteredData);
+			cloned.clusteredData = Arrays.copyOf(this.members(), Math.max(1, size));
+			cloned.pendingLeft = null;
+			cloned.pendingRight = null;
 			return cloned;
 		} catch (CloneNotSupportedException e) {
 			System.out.println("Errore di clonazione, restituzione di un nuovo oggetto null");
@@ -87,36 +186,124 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 
 	/**
 	 * Crea un nuovo cluster che è la fusione dei due cluster pre-esistenti.
+	 * <p>
+	 * Il nuovo cluster viene costruito solo quando se ne leggono gli elementi, per cui la fusione
+	 * richiede tempo costante. I due cluster di partenza non vengono modificati.
 	 *
 	 * @param c Cluster da fondere con il cluster {@code this}.
 	 * @return Cluster risultante dalla fusione di {@code c} e {@code this}.
 	 */
 	public Cluster mergeCluster(Cluster c) {
-		Cluster newCluster = (Cluster) this.clone();
-		Iterator<Integer> i = c.iterator();
-		while (i.hasNext()) {
-			newCluster.clusteredData.add(i.next());
-		}
+		Cluster newCluster = new Cluster();
+		newCluster.clusteredData = null;
+		newCluster.size = this.size + c.size;
+		newCluster.first = Math.min(this.first, c.first);
+		newCluster.pendingLeft = this;
+		newCluster.pendingRight = c;
 		return newCluster;
 	}
 
+	/**
+	 * Restituisce l'array ordinato degli indici, costruendolo se il cluster deriva da una
+	 * fusione non ancora costruita.
+	 *
+	 * @return Array degli indici, significativo nelle prime {@link #getSize()} posizioni.
+	 */
+	private synchronized int[] members() {
+		if (clusteredData == null) {
+			Cluster left = pendingLeft;
+			Cluster right = pendingRight;
+			if (left.isBuilt() && right.isBuilt()) {
+				clusteredData = mergeSorted(left.members(), left.size, right.members(), right.size);
+			} else {
+				clusteredData = collect();
+			}
+			pendingLeft = null;
+			pendingRight = null;
+		}
+		return clusteredData;
+	}
+
+	/**
+	 * Indica se l'array degli indici è già stato costruito.
+	 *
+	 * @return {@code true} se il cluster non ha fusioni in sospeso.
+	 */
+	private synchronized boolean isBuilt() {
+		return clusteredData != null;
+	}
+
+	/**
+	 * Raccoglie, senza ricorsione, gli indici di tutti i cluster già costruiti da cui deriva una
+	 * catena di fusioni in sospeso, e li ordina.
+	 *
+	 * @return Array ordinato degli indici del cluster.
+	 */
+	private int[] collect() {
+		int[] result = new int[size];
+		int filled = 0;
+		Deque<Cluster> stack = new ArrayDeque<>();
+		stack.push(pendingLeft);
+		stack.push(pendingRight);
+		while (!stack.isEmpty()) {
+			Cluster c = stack.pop();
+			synchronized (c) {
+				if (c.clusteredData != null) {
+					System.arraycopy(c.clusteredData, 0, result, filled, c.size);
+					filled += c.size;
+					continue;
+				}
+				stack.push(c.pendingLeft);
+				stack.push(c.pendingRight);
+			}
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Fonde due array ordinati e disgiunti in un unico array ordinato.
+	 *
+	 * @param a Primo array.
+	 * @param sizeA Numero di elementi significativi del primo array.
+	 * @param b Secondo array.
+	 * @param sizeB Numero di elementi significativi del secondo array.
+	 * @return Array ordinato con gli elementi di entrambi.
+	 */
+	private static int[] mergeSorted(int[] a, int sizeA, int[] b, int sizeB) {
+		int[] result = new int[sizeA + sizeB];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < sizeA && j < sizeB) {
+			result[k++] = a[i] < b[j] ? a[i++] : b[j++];
+		}
+		while (i < sizeA) {
+			result[k++] = a[i++];
+		}
+		while (j < sizeB) {
+			result[k++] = b[j++];
+		}
+		return result;
+	}
+
 	/**
 	 * Restituisce una rappresentazione testuale del cluster.
 	 *
 	 * @return Stringa contenente gli indici del cluster separati da virgole.
 	 */
 	public String toString() {
-		String str = "";
-		Iterator<Integer> i = this.iterator();
+		StringBuilder str = new StringBuilder();
+		int[] data = members();
 
-		while (i.hasNext()) {
-			str += i.next();
-			if (i.hasNext()) {
-				str += ",";
+		for (int i = 0; i < size; i++) {
+			str.append(data[i]);
+			if (i < size - 1) {
+				str.append(",");
 			}
 		}
 
-		return str;
+		return str.toString();
 	}
 
 	/**
@@ -126,12 +313,52 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
 	 * @return Stringa contenente i dettagli degli indici del cluster.
 	 */
 	public String toString(Data data) {
-		String str = "";
+		StringBuilder str = new StringBuilder();
+		int[] ids = members();
 
-		for (Integer id : clusteredData) {
-			str += "<" + data.getExample(id) + ">";
+		for (int i = 0; i < size; i++) {
+			str.append("<").append(data.getExample(ids[i])).append(">");
 		}
 
-		return str;
+		return str.toString();
+	}
+
+	/**
+	 * Serializza il cluster scrivendo gli indici come {@link TreeSet}, come nelle versioni precedenti.
+	 *
+	 * @param out Stream di output.
+	 * @throws IOException Se la scrittura fallisce.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		Set<Integer> set = new TreeSet<>();
+		int[] data = members();
+		for (int i = 0; i < size; i++) {
+			set.add(data[i]);
+		}
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("clusteredData", set);
+		out.writeFields();
+	}
+
+	/**
+	 * Ricostruisce il cluster dall'insieme di indici serializzato.
+	 *
+	 * @param in Stream di input.
+	 * @throws IOException Se la lettura fallisce.
+	 * @throws ClassNotFoundException Se una classe serializzata non è disponibile.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		Set<Integer> set = (Set<Integer>) fields.get("clusteredData", null);
+		clusteredData = new int[Math.max(1, set == null ? 0 : set.size())];
+		size = 0;
+		if (set != null) {
+			for (Integer id : set) {
+				clusteredData[size++] = id;
+			}
+			Arrays.sort(clusteredData, 0, size);
+		}
+		first = size > 0 ? clusteredData[0] : Integer.MAX_VALUE;
 	}
 }
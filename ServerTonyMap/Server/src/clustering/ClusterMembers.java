@@ -0,0 +1,84 @@
+package src.clustering;
+
+import java.util.Arrays;
+
+/**
+ * Esempi dei cluster costruiti da una strategia di clustering che non mantiene i {@link Cluster}
+ * di ogni livello.
+ * <p>
+ * Ogni cluster è identificato dal suo indice minimo e i suoi esempi sono concatenati in una lista,
+ * per cui la fusione di due cluster richiede tempo costante e la memoria occupata è O(n). Il
+ * {@link Cluster} corrispondente viene costruito solo quando serve calcolarne la distanza.
+ * </p>
+ */
+class ClusterMembers {
+
+	/** Esempio successivo nella lista del proprio cluster, -1 per l'ultimo */
+	private final int[] next;
+
+	/** Ultimo esempio della lista di ogni cluster, significativo solo per gli identificativi */
+	private final int[] tail;
+
+	/** Numero di esempi di ogni cluster, significativo solo per gli identificativi */
+	private final int[] count;
+
+	/**
+	 * Crea {@code n} cluster, ognuno contenente un solo esempio.
+	 *
+	 * @param n Numero di esempi.
+	 */
+	ClusterMembers(int n) {
+		next = new int[n];
+		tail = new int[n];
+		count = new int[n];
+		for (int i = 0; i < n; i++) {
+			next[i] = -1;
+			tail[i] = i;
+			count[i] = 1;
+		}
+	}
+
+	/**
+	 * Fonde due cluster: il cluster {@code b} viene accodato al cluster {@code a}, che ne conserva
+	 * l'identificativo.
+	 *
+	 * @param a Identificativo del cluster risultante.
+	 * @param b Identificativo del cluster da accodare.
+	 */
+	void merge(int a, int b) {
+		next[tail[a]] = b;
+		tail[a] = tail[b];
+		count[a] += count[b];
+	}
+
+	/**
+	 * Restituisce gli esempi di un cluster, nell'ordine in cui sono stati accodati.
+	 *
+	 * @param id Identificativo del cluster.
+	 * @return Indici degli esempi del cluster.
+	 */
+	int[] members(int id) {
+		int[] members = new int[count[id]];
+		int i = 0;
+		for (int e = id; e >= 0; e = next[e]) {
+			members[i++] = e;
+		}
+		return members;
+	}
+
+	/**
+	 * Costruisce il {@link Cluster} con gli esempi di un cluster, inseriti in ordine crescente.
+	 *
+	 * @param id Identificativo del cluster.
+	 * @return Nuovo cluster con gli stessi esempi.
+	 */
+	Cluster cluster(int id) {
+		int[] members = members(id);
+		Arrays.sort(members);
+		Cluster cluster = new Cluster();
+		for (int e : members) {
+			cluster.addData(e);
+		}
+		return cluster;
+	}
+}
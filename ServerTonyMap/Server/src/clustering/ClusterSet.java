@@ -3,6 +3,7 @@ package src.clustering;
 import src.data.Data;
 import src.distance.ClusterDistance;
 import src.exceptions.ImpossibleClusterMerge;
+import src.exceptions.MiningCancelledException;
 
 import java.io.Serializable;
 
@@ -21,6 +22,12 @@ import java.io.Serializable;
  */
 class ClusterSet implements Serializable {
 
+	/**
+	 * Identificativo di versione per la serializzazione, fissato per mantenere leggibili
+	 * i dendrogrammi già salvati su file.
+	 */
+	private static final long serialVersionUID = 3512125628037108031L;
+
 	/**
 	 * Array di oggetti {@link Cluster} che rappresenta l'insieme dei cluster.
 	 */
@@ -55,6 +62,43 @@ class ClusterSet implements Serializable {
 		lastClusterIndex++;
 	}
 
+	/**
+	 * Aggiunge in coda un cluster che non è sicuramente già presente, senza il controllo
+	 * dei duplicati eseguito da {@link #add(Cluster)}.
+	 *
+	 * @param c Cluster da aggiungere.
+	 */
+	void append(Cluster c) {
+		C[lastClusterIndex] = c;
+		lastClusterIndex++;
+	}
+
+	/**
+	 * Crea il ClusterSet del livello 0 di un dendrogramma, contenente un cluster
+	 * separato per ognuno degli esempi.
+	 *
+	 * @param n Numero di esempi del dataset.
+	 * @return ClusterSet con {@code n} cluster, il cluster in posizione {@code i} contiene il solo esempio {@code i}.
+	 */
+	static ClusterSet singletons(int n) {
+		ClusterSet cSet = new ClusterSet(n);
+		for (int i = 0; i < n; i++) {
+			Cluster c = new Cluster();
+			c.addData(i);
+			cSet.append(c);
+		}
+		return cSet;
+	}
+
+	/**
+	 * Restituisce il numero di cluster memorizzati.
+	 *
+	 * @return Numero di cluster presenti nel ClusterSet.
+	 */
+	public int size() {
+		return lastClusterIndex;
+	}
+
 	/**
 	 * Restituisce il cluster memorizzato in una determinata posizione.
 	 *
@@ -65,19 +109,45 @@ class ClusterSet implements Serializable {
 		return C[i];
 	}
 
+	/**
+	 * Restituisce la posizione del cluster il cui esempio di indice minimo è {@code id}.
+	 * <p>
+	 * I cluster sono sempre memorizzati in ordine crescente rispetto al loro esempio di indice
+	 * minimo, per cui la ricerca è binaria.
+	 *
+	 * @param id Indice minimo degli esempi del cluster cercato.
+	 * @return Posizione del cluster, oppure -1 se nessun cluster inizia con {@code id}.
+	 */
+	public int indexOf(int id) {
+		int low = 0;
+		int high = lastClusterIndex - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int first = C[mid].first();
+			if (first < id) {
+				low = mid + 1;
+			} else if (first > id) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * Restituisce una rappresentazione testuale dei cluster memorizzati.
 	 *
 	 * @return Stringa contenente i dettagli dei cluster.
 	 */
 	public String toString() {
-		String str = "";
+		StringBuilder str = new StringBuilder();
 		for (int i = 0; i < C.length; i++) {
 			if (C[i] != null) {
-				str += "cluster" + i + ":" + C[i] + "\n";
+				str.append("cluster").append(i).append(":").append(C[i]).append("\n");
 			}
 		}
-		return str;
+		return str.toString();
 	}
 
 	/**
@@ -87,13 +157,13 @@ class ClusterSet implements Serializable {
 	 * @return Stringa contenente i dettagli dei cluster basati sui dati.
 	 */
 	public String toString(Data data) {
-		String str = "";
+		StringBuilder str = new StringBuilder();
 		for (int i = 0; i < C.length; i++) {
 			if (C[i] != null) {
-				str += "cluster" + i + ":" + C[i].toString(data) + "\n";
+				str.append("cluster").append(i).append(":").append(C[i].toString(data)).append("\n");
 			}
 		}
-		return str;
+		return str.toString();
 	}
 
 	/**
@@ -106,19 +176,33 @@ class ClusterSet implements Serializable {
 	 *         possibile eseguire la fusione.
 	 */
 	public ClusterSet mergeClosestClusters(ClusterDistance distance, Data data) {
+		return mergeClosestClusters(distance, data, new CancellationToken());
+	}
+
+	/**
+	 * Come {@link #mergeClosestClusters(ClusterDistance, Data)}, controllando dopo ogni riga di
+	 * confronti se il clustering va interrotto.
+	 *
+	 * @param distance Oggetto per il calcolo della distanza tra cluster.
+	 * @param data Oggetto {@link Data} che rappresenta il dataset corrente.
+	 * @param token Richiesta di interruzione del clustering.
+	 * @return Nuova istanza di ClusterSet con i cluster fusi, oppure {@code this} se non è
+	 *         possibile eseguire la fusione.
+	 * @throws MiningCancelledException Se il clustering viene interrotto.
+	 */
+	public ClusterSet mergeClosestClusters(ClusterDistance distance, Data data, CancellationToken token) {
 		try {
 
 			if (lastClusterIndex == 1) {
 				throw new ImpossibleClusterMerge("Impossibile unire dei cluster, ne è presente solo uno.");
 			}
 
-			ClusterSet newClusterSet = new ClusterSet(lastClusterIndex - 1);
 			double minDistance = Double.MAX_VALUE;
 			int closestC1 = 0;
 			int closestC2 = 0;
-			boolean inserted = false;
 
 			for (int i = 0; i < lastClusterIndex - 1; i++) {
+				token.throwIfCancelled();
 				for (int j = i + 1; j < lastClusterIndex; j++) {
 					double tmpDistance = distance.distance(C[i], C[j], data);
 					if (tmpDistance < minDistance) {
@@ -129,19 +213,7 @@ class ClusterSet implements Serializable {
 				}
 			}
 
-			Cluster newCluster = (Cluster) C[closestC1].clone();
-			newCluster = newCluster.mergeCluster(C[closestC2]);
-
-			for (int i = 0; i < lastClusterIndex; i++) {
-				if (i != closestC1 && i != closestC2) {
-					newClusterSet.add(C[i]);
-				} else if (!inserted) {
-					newClusterSet.add(newCluster);
-					inserted = true;
-				}
-			}
-
-			return newClusterSet;
+			return mergeClusters(closestC1, closestC2);
 
 		} catch (ImpossibleClusterMerge e) {
 
@@ -151,5 +223,31 @@ class ClusterSet implements Serializable {
 
 		}
 	}
-}
 
+	/**
+	 * Fonde i cluster nelle posizioni {@code i} e {@code j} in un unico cluster.
+	 * <p>
+	 * Il cluster risultante occupa la posizione del primo dei due cluster, gli altri
+	 * cluster mantengono il loro ordine relativo.
+	 *
+	 * @param i Posizione del primo cluster da fondere.
+	 * @param j Posizione del secondo cluster da fondere, con {@code i < j}.
+	 * @return Nuova istanza di ClusterSet con un cluster in meno.
+	 */
+	public ClusterSet mergeClusters(int i, int j) {
+		ClusterSet newClusterSet = new ClusterSet(lastClusterIndex - 1);
+		Cluster newCluster = C[i].mergeCluster(C[j]);
+		boolean inserted = false;
+
+		for (int k = 0; k < lastClusterIndex; k++) {
+			if (k != i && k != j) {
+				newClusterSet.append(C[k]);
+			} else if (!inserted) {
+				newClusterSet.append(newCluster);
+				inserted = true;
+			}
+		}
+
+		return newClusterSet;
+	}
+}
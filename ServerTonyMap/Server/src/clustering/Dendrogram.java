@@ -3,15 +3,31 @@ package src.clustering;
 import src.data.Data;
 
 import java.io.Serializable;
+import java.util.Arrays;
 //**********************************************************************************
 // Interfacce implementate:
 // Serializable: Per poter serializzare e quindi salvare su file la classe
 //
 //**********************************************************************************
 public class Dendrogram implements Serializable {
-    /**Rappresentazione dei livelli del dendrogramma */
+    /**
+     * Identificativo di versione per la serializzazione, fissato per mantenere leggibili
+     * i dendrogrammi già salvati su file.
+     */
+    private static final long serialVersionUID = 670148539129238203L;
+
+    /**Rappresentazione dei livelli del dendrogramma, null se il dendrogramma è memorizzato come sequenza di fusioni */
     private ClusterSet tree[];
 
+    /**Rappresentazione compatta del dendrogramma come sequenza di fusioni, null se sono memorizzati tutti i livelli */
+    private MergeList merges;
+
+    /**Ultimo livello ricostruito dalla sequenza di fusioni */
+    private transient ClusterSet cachedLevel;
+
+    /**Indice dell'ultimo livello ricostruito dalla sequenza di fusioni, significativo se cachedLevel non è null */
+    private transient int cachedIndex;
+
     /**
      * crea un vettore di dimensione depth con cui inizializza tree.
      * @param depth profondità del dendrogramma
@@ -20,6 +36,14 @@ public class Dendrogram implements Serializable {
         tree = new ClusterSet[depth];
     }
 
+    /**
+     * crea un dendrogramma memorizzato come sequenza di fusioni
+     * @param merges fusioni che definiscono i livelli del dendrogramma
+     */
+    Dendrogram(MergeList merges) {
+        this.merges = merges;
+    }
+
     /**
      * memorizza c nella posizione level di tree
      * @param c nuovo ClusterSet da memorizzare
@@ -29,13 +53,72 @@ public class Dendrogram implements Serializable {
         tree[level] = c;
     }
 
+    /**
+     * memorizza il dendrogramma come sequenza di fusioni: il livello 0 contiene un cluster per
+     * ognuno degli n esempi e il livello i si ottiene dal precedente applicando la fusione i-1.
+     * I ClusterSet dei livelli non vengono memorizzati ma ricostruiti quando richiesti.
+     * @param n numero di esempi del dataset
+     * @param left per ogni fusione, un esempio qualsiasi del primo cluster da fondere
+     * @param right per ogni fusione, un esempio qualsiasi del secondo cluster da fondere
+     * @param height per ogni fusione, la distanza tra i due cluster
+     */
+    void setMerges(int n, int[] left, int[] right, double[] height) {
+        setMerges(n, left, right, height, getDepth() - 1);
+    }
+
+    /**
+     * memorizza il dendrogramma come sequenza delle prime count fusioni, per cui la profondità
+     * del dendrogramma diventa count + 1; utilizzato per conservare i livelli completati da un
+     * clustering interrotto
+     * @param n numero di esempi del dataset
+     * @param left per ogni fusione, un esempio qualsiasi del primo cluster da fondere
+     * @param right per ogni fusione, un esempio qualsiasi del secondo cluster da fondere
+     * @param height per ogni fusione, la distanza tra i due cluster
+     * @param count numero di fusioni da memorizzare
+     */
+    void setMerges(int n, int[] left, int[] right, double[] height, int count) {
+        merges = MergeList.normalize(n, count, left, right, height);
+        tree = null;
+        cachedLevel = null;
+    }
+
+    /**
+     * conserva soltanto i primi livelli di un dendrogramma memorizzato per livelli; utilizzato per
+     * conservare i livelli completati da un clustering interrotto
+     * @param depth numero di livelli da conservare, già tutti avvalorati
+     */
+    void keepLevels(int depth) {
+        if (merges == null && depth < tree.length) {
+            tree = Arrays.copyOf(tree, depth);
+        }
+    }
+
+    /**
+     * restituisce la sequenza di fusioni che definisce il dendrogramma
+     * @return sequenza di fusioni, oppure null se sono memorizzati i ClusterSet di tutti i livelli
+     */
+    MergeList getMerges() {
+        return merges;
+    }
+
     /**
      * restituisce il ClusterSet del dendrogramma ad un determinato livello
      * @param level livello del dendrogramma
      * @return ClusterSet al livello level
      */
-    public ClusterSet getClusterSet(int level) {
-        return tree[level];
+    public synchronized ClusterSet getClusterSet(int level) {
+        if (merges == null) {
+            return tree[level];
+        }
+        if (cachedLevel == null || level != cachedIndex) {
+            if (cachedLevel != null && level == cachedIndex + 1) {
+                cachedLevel = nextLevel(cachedLevel, cachedIndex);
+            } else {
+                cachedLevel = merges.materialize(level);
+            }
+            cachedIndex = level;
+        }
+        return cachedLevel;
     }
 
     /**
@@ -43,20 +126,74 @@ public class Dendrogram implements Serializable {
      * @return profondità del dendrogramma
      */
     public int getDepth() {
-        return tree.length;
+        return merges == null ? tree.length : merges.size() + 1;
+    }
+
+    /**
+     * restituisce una stima della memoria occupata dal dendrogramma, compreso il livello ricostruito
+     * dalla sequenza di fusioni
+     * @return numero approssimato di byte occupati
+     */
+    public long getMemoryFootprint() {
+        if (merges == null) {
+            long bytes = 16L + 8L * tree.length;
+            for (ClusterSet cSet : tree) {
+                if (cSet != null) {
+                    // riferimenti del ClusterSet più il cluster creato dalla fusione del livello
+                    bytes += 32L + 8L * cSet.size() + 48L;
+                }
+            }
+            return bytes;
+        }
+        long bytes = 64L + (4L + 4L + 8L + (merges.hasLevelIndex() ? 8L : 0L)) * merges.size();
+        // livello ricostruito: riferimenti, cluster e indici degli esempi
+        return bytes + (8L + 48L + 4L) * merges.getNumberOfExamples();
+    }
+
+    /**
+     * restituisce un dendrogramma che condivide le fusioni di questo ma ricostruisce i livelli per conto
+     * proprio, in modo che più thread possano scorrerne i livelli senza contendersi il livello ricostruito.
+     * Se sono memorizzati tutti i livelli viene restituito il dendrogramma stesso.
+     * @return dendrogramma con gli stessi livelli
+     */
+    Dendrogram view() {
+        return merges == null ? this : new Dendrogram(merges);
+    }
+
+    /**
+     * ricava il livello successivo applicando al ClusterSet di un livello la relativa fusione
+     * @param cSet ClusterSet del livello
+     * @param level indice del livello
+     * @return ClusterSet del livello level+1
+     */
+    private ClusterSet nextLevel(ClusterSet cSet, int level) {
+        if (merges.hasLevelIndex()) {
+            return cSet.mergeClusters(merges.getLeftPosition(level), merges.getRightPosition(level));
+        }
+        return cSet.mergeClusters(cSet.indexOf(merges.getLeft(level)), cSet.indexOf(merges.getRight(level)));
+    }
+
+    /**
+     * restituisce la rappresentazione testuale di un solo livello del dendrogramma, nello stesso
+     * formato utilizzato da toString
+     * @param level livello del dendrogramma
+     * @return stringa che rappresenta il livello
+     */
+    public String toString(int level) {
+        return "level" + level + ":\n" + getClusterSet(level) + "\n";
     }
 
     public String toString() {
-        String v="";
-        for (int i=0;i<tree.length;i++)
-            v+=("level"+i+":\n"+tree[i]+"\n");
-        return v;
+        StringBuilder v = new StringBuilder();
+        for (int i=0;i<getDepth();i++)
+            v.append(toString(i));
+        return v.toString();
     }
 
     public String toString(Data data) {
-        String v="";
-        for (int i=0;i<tree.length;i++)
-            v+=("level"+i+":\n"+tree[i].toString(data)+"\n");
-        return v;
+        StringBuilder v = new StringBuilder();
+        for (int i=0;i<getDepth();i++)
+            v.append("level").append(i).append(":\n").append(getClusterSet(i).toString(data)).append("\n");
+        return v.toString();
     }
 }
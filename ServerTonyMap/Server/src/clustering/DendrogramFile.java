@@ -0,0 +1,249 @@
+package src.clustering;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Formato binario dei file .HCM per i dendrogrammi memorizzati come {@link MergeList}.
+ * <p>
+ * Il file è composto da:
+ * <ul>
+ * <li>un'intestazione di {@value #HEADER_SIZE} byte: il numero magico {@code "HCMB"}, la versione del
+ * formato, i flag, il numero di esempi, il numero di fusioni e 4 byte riservati;</li>
+ * <li>le altezze delle fusioni, come {@code double};</li>
+ * <li>gli identificativi del primo e del secondo cluster di ogni fusione, come {@code int};</li>
+ * <li>se il flag {@link #FLAG_LEVEL_INDEX} è attivo, l'indice dei livelli: le posizioni del primo e
+ * del secondo cluster di ogni fusione, come {@code int}.</li>
+ * </ul>
+ * I valori sono memorizzati in big-endian. Il numero magico non può essere confuso con l'intestazione
+ * {@code 0xACED} della serializzazione Java, con cui sono stati salvati i file .HCM precedenti.
+ * </p>
+ * <p>
+ * La lettura mappa il file in memoria tramite {@link FileChannel#map}: le fusioni sono lette
+ * direttamente dalla pagina del file quando servono, senza copiarle nello heap. Per questo un file
+ * non viene mai sovrascritto: {@link #replace(Path, Content)} scrive il nuovo contenuto in un file
+ * temporaneo e lo sostituisce a quello esistente, che resta valido per chi lo ha già mappato.
+ * </p>
+ */
+class DendrogramFile {
+
+	/** Numero magico {@code "HCMB"} */
+	static final int MAGIC = 0x48434D42;
+
+	/** Versione corrente del formato */
+	static final int VERSION = 1;
+
+	/** Flag che indica la presenza dell'indice dei livelli */
+	static final int FLAG_LEVEL_INDEX = 1;
+
+	/** Dimensione in byte dell'intestazione */
+	static final int HEADER_SIZE = 24;
+
+	/**
+	 * Contenuto da scrivere in un file.
+	 */
+	interface Content {
+		/**
+		 * Scrive il contenuto.
+		 *
+		 * @param out Stream su cui scrivere, chiuso dal chiamante.
+		 * @throws IOException Se la scrittura fallisce.
+		 */
+		void writeTo(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * Verifica se un file è nel formato binario.
+	 *
+	 * @param path Percorso del file.
+	 * @return {@code true} se il file inizia con il numero magico del formato.
+	 * @throws IOException Se il file non può essere letto.
+	 */
+	static boolean isBinary(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(4);
+			while (magic.hasRemaining() && channel.read(magic) >= 0) {
+				// legge i primi 4 byte
+			}
+			return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+		}
+	}
+
+	/**
+	 * Scrive una sequenza di fusioni nel formato binario.
+	 *
+	 * @param path Percorso del file.
+	 * @param merges Fusioni da scrivere.
+	 * @param levelIndex Se {@code true} viene scritto anche l'indice dei livelli.
+	 * @throws IOException Se la scrittura fallisce.
+	 */
+	static void write(Path path, MergeList merges, boolean levelIndex) throws IOException {
+		replace(path, stream -> write(new DataOutputStream(stream), merges, levelIndex));
+	}
+
+	/**
+	 * Scrive il contenuto di un file in un file temporaneo della stessa directory e lo sostituisce
+	 * in modo atomico al file indicato. Chi ha già mappato il file precedente continua a leggerlo
+	 * inalterato, mentre chi lo apre dopo la sostituzione legge il nuovo contenuto.
+	 *
+	 * @param path Percorso del file.
+	 * @param content Contenuto da scrivere.
+	 * @throws IOException Se la scrittura o la sostituzione falliscono; in questo caso il file non viene modificato.
+	 */
+	static void replace(Path path, Content content) throws IOException {
+		Path target = path.toAbsolutePath();
+		// il nome inizia con un punto, per non comparire tra i file disponibili durante la scrittura
+		Path temp = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+		try {
+			try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+				content.writeTo(out);
+			}
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+	}
+
+	/**
+	 * Scrive una sequenza di fusioni nel formato binario su uno stream.
+	 *
+	 * @param out Stream su cui scrivere.
+	 * @param merges Fusioni da scrivere.
+	 * @param levelIndex Se {@code true} viene scritto anche l'indice dei livelli.
+	 * @throws IOException Se la scrittura fallisce.
+	 */
+	private static void write(DataOutputStream out, MergeList merges, boolean levelIndex) throws IOException {
+		int count = merges.size();
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(levelIndex ? FLAG_LEVEL_INDEX : 0);
+		out.writeInt(merges.getNumberOfExamples());
+		out.writeInt(count);
+		out.writeInt(0);
+
+		for (int i = 0; i < count; i++) {
+			out.writeDouble(merges.getHeight(i));
+		}
+		for (int i = 0; i < count; i++) {
+			out.writeInt(merges.getLeft(i));
+		}
+		for (int i = 0; i < count; i++) {
+			out.writeInt(merges.getRight(i));
+		}
+
+		if (levelIndex) {
+			int[][] positions = merges.hasLevelIndex() ? null : merges.computeLevelIndex();
+			for (int i = 0; i < count; i++) {
+				out.writeInt(positions == null ? merges.getLeftPosition(i) : positions[0][i]);
+			}
+			for (int i = 0; i < count; i++) {
+				out.writeInt(positions == null ? merges.getRightPosition(i) : positions[1][i]);
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Legge una sequenza di fusioni dal formato binario, mappando il file in memoria.
+	 *
+	 * @param path Percorso del file.
+	 * @return Fusioni lette dal file.
+	 * @throws IOException Se la lettura fallisce, il file non è nel formato atteso o contiene fusioni non valide.
+	 */
+	static MergeList read(Path path) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Il file " + path + " non è un dendrogramma in formato binario.");
+		}
+		int version = buffer.getInt(4);
+		if (version != VERSION) {
+			throw new IOException("Versione del formato non supportata: " + version);
+		}
+		int flags = buffer.getInt(8);
+		int numberOfExamples = buffer.getInt(12);
+		int count = buffer.getInt(16);
+
+		boolean levelIndex = (flags & FLAG_LEVEL_INDEX) != 0;
+		long expected = HEADER_SIZE + (long) count * (Double.BYTES + 2 * Integer.BYTES)
+				+ (levelIndex ? (long) count * 2 * Integer.BYTES : 0);
+		if (count < 0 || numberOfExamples <= count || buffer.limit() != expected) {
+			throw new IOException("Il file " + path + " è incompleto o danneggiato.");
+		}
+
+		int offset = HEADER_SIZE;
+		ByteBuffer heights = buffer.slice(offset, count * Double.BYTES);
+		offset += count * Double.BYTES;
+		ByteBuffer left = buffer.slice(offset, count * Integer.BYTES);
+		offset += count * Integer.BYTES;
+		ByteBuffer right = buffer.slice(offset, count * Integer.BYTES);
+		offset += count * Integer.BYTES;
+
+		ByteBuffer leftPosition = null;
+		ByteBuffer rightPosition = null;
+		if (levelIndex) {
+			leftPosition = buffer.slice(offset, count * Integer.BYTES);
+			offset += count * Integer.BYTES;
+			rightPosition = buffer.slice(offset, count * Integer.BYTES);
+		}
+
+		IntBuffer lefts = left.asIntBuffer();
+		IntBuffer rights = right.asIntBuffer();
+		IntBuffer leftPositions = leftPosition != null ? leftPosition.asIntBuffer() : null;
+		IntBuffer rightPositions = rightPosition != null ? rightPosition.asIntBuffer() : null;
+		if (!isValid(numberOfExamples, lefts, rights, leftPositions, rightPositions)) {
+			throw new IOException("Il file " + path + " è incompleto o danneggiato.");
+		}
+
+		return new MergeList(numberOfExamples, lefts, rights, heights.asDoubleBuffer(), leftPositions, rightPositions);
+	}
+
+	/**
+	 * Verifica che le fusioni lette da un file siano una sequenza valida: ogni fusione unisce due cluster
+	 * ancora attivi, identificati dal loro esempio di indice minimo {@code left < right < numberOfExamples},
+	 * e le posizioni dell'indice dei livelli, se presenti, sono interne al ClusterSet del livello.
+	 *
+	 * @param numberOfExamples Numero di esempi del dataset.
+	 * @param left Primo cluster di ogni fusione.
+	 * @param right Secondo cluster di ogni fusione.
+	 * @param leftPosition Posizione del primo cluster di ogni fusione, oppure null.
+	 * @param rightPosition Posizione del secondo cluster di ogni fusione, oppure null.
+	 * @return {@code true} se le fusioni sono valide.
+	 */
+	private static boolean isValid(int numberOfExamples, IntBuffer left, IntBuffer right,
+			IntBuffer leftPosition, IntBuffer rightPosition) {
+		boolean[] merged = new boolean[numberOfExamples];
+		for (int i = 0; i < left.limit(); i++) {
+			int a = left.get(i);
+			int b = right.get(i);
+			if (a < 0 || a >= b || b >= numberOfExamples || merged[a] || merged[b]) {
+				return false;
+			}
+			merged[b] = true;
+
+			if (leftPosition != null) {
+				// al livello i sono presenti numberOfExamples - i cluster
+				int p = leftPosition.get(i);
+				int q = rightPosition.get(i);
+				if (p < 0 || p >= q || q >= numberOfExamples - i) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
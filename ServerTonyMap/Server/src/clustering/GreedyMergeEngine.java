@@ -0,0 +1,39 @@
+package src.clustering;
+
+import src.data.Data;
+import src.distance.ClusterDistance;
+import src.exceptions.MiningCancelledException;
+
+/**
+ * Implementazione di {@link MiningEngine} che a ogni livello confronta tutte le coppie di cluster
+ * tramite {@link ClusterSet#mergeClosestClusters(ClusterDistance, Data)}.
+ * <p>
+ * Funziona con qualsiasi {@link ClusterDistance}, ma ricalcola a ogni livello le distanze
+ * tra tutti gli esempi dei cluster confrontati.
+ * </p>
+ */
+public class GreedyMergeEngine implements MiningEngine {
+
+	/**
+	 * Costruisce i livelli del dendrogramma fondendo a ogni passo i due cluster più vicini.
+	 *
+	 * @param data Esempi su cui lavorare.
+	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @param dendrogram Dendrogramma da avvalorare.
+	 * @param token Richiesta di interruzione del clustering; se interrotto il dendrogramma conserva i livelli completati.
+	 */
+	public void mine(Data data, ClusterDistance distance, Dendrogram dendrogram, CancellationToken token) {
+		ClusterSet cSet = ClusterSet.singletons(data.getNumberOfExample());
+		dendrogram.setClusterSet(cSet, 0);
+
+		for (int i = 1; i < dendrogram.getDepth(); i++) {
+			try {
+				cSet = cSet.mergeClosestClusters(distance, data, token);
+			} catch (MiningCancelledException e) {
+				dendrogram.keepLevels(i);
+				throw new MiningCancelledException(e.getMessage(), i);
+			}
+			dendrogram.setClusterSet(cSet, i);
+		}
+	}
+}
@@ -1,10 +1,18 @@
 package src.clustering;
 
 import src.data.Data;
+import src.distance.AverageLinkDistance;
 import src.distance.ClusterDistance;
+import src.distance.LanceWilliamsDistance;
+import src.distance.SingleLinkDistance;
 import src.exceptions.InvalidDepthException;
+import src.exceptions.MiningCancelledException;
+import src.exceptions.NoDataException;
+import src.metrics.Phase;
+import src.metrics.ServerMetrics;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 //**************************************************************************************************************************
@@ -21,11 +29,22 @@ import java.nio.file.Paths;
  */
 public class HierachicalClusterMiner implements Serializable {
 
+	/**
+	 * Identificativo di versione per la serializzazione, fissato per mantenere leggibili
+	 * i dendrogrammi già salvati su file.
+	 */
+	private static final long serialVersionUID = -3341269977500431402L;
+
 	/**
 	 * Oggetto {@link Dendrogram} che rappresenta la struttura del clustering gerarchico.
 	 */
 	private Dendrogram dendrogram;
 
+	/**
+	 * Indica se il clustering è stato interrotto e il dendrogramma contiene solo i livelli completati.
+	 */
+	private transient boolean partial;
+
 	/**
 	 * Costruttore della classe {@code HierachicalClusterMiner} che inizializza il dendrogramma
 	 * con una profondità specificata.
@@ -36,6 +55,15 @@ public class HierachicalClusterMiner implements Serializable {
 		dendrogram = new Dendrogram(depth);
 	}
 
+	/**
+	 * Costruttore utilizzato per i dendrogrammi letti da file in formato binario.
+	 *
+	 * @param dendrogram Dendrogramma già costruito.
+	 */
+	private HierachicalClusterMiner(Dendrogram dendrogram) {
+		this.dendrogram = dendrogram;
+	}
+
 	/**
 	 * Restituisce una rappresentazione testuale del dendrogramma.
 	 *
@@ -45,6 +73,57 @@ public class HierachicalClusterMiner implements Serializable {
 		return dendrogram.toString();
 	}
 
+	/**
+	 * Restituisce la profondità del dendrogramma.
+	 *
+	 * @return Numero di livelli del dendrogramma.
+	 */
+	public int getDepth() {
+		return dendrogram.getDepth();
+	}
+
+	/**
+	 * Restituisce una stima della memoria occupata dal dendrogramma.
+	 *
+	 * @return Numero approssimato di byte occupati.
+	 */
+	public long getMemoryFootprint() {
+		return dendrogram.getMemoryFootprint();
+	}
+
+	/**
+	 * Restituisce un oggetto con lo stesso dendrogramma, da usare quando il risultato è condiviso tra più
+	 * client: le fusioni non vengono copiate, ma ogni vista ricostruisce i livelli per conto proprio.
+	 *
+	 * @return Vista sul dendrogramma.
+	 */
+	public HierachicalClusterMiner view() {
+		HierachicalClusterMiner view = new HierachicalClusterMiner(dendrogram.view());
+		view.partial = partial;
+		return view;
+	}
+
+	/**
+	 * Indica se il clustering è stato interrotto prima di raggiungere la profondità richiesta, per cui il
+	 * dendrogramma contiene soltanto i livelli completati.
+	 *
+	 * @return {@code true} se il dendrogramma è parziale.
+	 */
+	public boolean isPartial() {
+		return partial;
+	}
+
+	/**
+	 * Restituisce una rappresentazione testuale di un livello del dendrogramma, in modo da
+	 * poterlo inviare senza costruire la stringa dell'intero dendrogramma.
+	 *
+	 * @param level Livello del dendrogramma.
+	 * @return Stringa rappresentante il livello.
+	 */
+	public String toString(int level) {
+		return dendrogram.toString(level);
+	}
+
 	/**
 	 * Restituisce una rappresentazione testuale del dendrogramma basata sui dati.
 	 *
@@ -61,11 +140,87 @@ public class HierachicalClusterMiner implements Serializable {
 	 * Il primo livello (livello 0) contiene un cluster separato per ogni esempio.
 	 * I livelli successivi sono costruiti fondendo i due cluster più vicini fino a raggiungere
 	 * la profondità specificata del dendrogramma.
+	 * <p>
+	 * La strategia di fusione è scelta da {@link #engineFor(ClusterDistance)}.
+	 *
+	 * @param data Esempi su cui lavorare.
+	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @throws NoDataException Se il dataset non contiene esempi.
+	 */
+	public void mine(Data data, ClusterDistance distance) throws NoDataException {
+		mine(data, distance, engineFor(distance));
+	}
+
+	/**
+	 * Esegue il clustering dei dati forniti come {@link #mine(Data, ClusterDistance)}, interrompendolo
+	 * se richiesto come {@link #mine(Data, ClusterDistance, MiningEngine, CancellationToken)}.
 	 *
 	 * @param data Esempi su cui lavorare.
 	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @param token Richiesta di interruzione del clustering.
+	 * @throws NoDataException Se il dataset non contiene esempi.
+	 * @throws MiningCancelledException Se il clustering viene interrotto senza livelli utilizzabili.
 	 */
-	public void mine(Data data, ClusterDistance distance) {
+	public void mine(Data data, ClusterDistance distance, CancellationToken token)
+			throws NoDataException, MiningCancelledException {
+		mine(data, distance, engineFor(distance), token);
+	}
+
+	/**
+	 * Restituisce la strategia di fusione più efficiente per la metrica indicata: per il Single Linkage
+	 * lo {@link SlinkEngine}, per l'Average Linkage il {@link NNChainEngine}, per le altre metriche che
+	 * supportano l'aggiornamento di Lance-Williams il {@link LanceWilliamsEngine}, altrimenti il
+	 * {@link GreedyMergeEngine}. Tutte producono lo stesso dendrogramma.
+	 *
+	 * @param distance Algoritmo di distanza tra cluster.
+	 * @return Strategia di fusione da utilizzare.
+	 */
+	public static MiningEngine engineFor(ClusterDistance distance) {
+		if (distance instanceof SingleLinkDistance) {
+			return new SlinkEngine();
+		} else if (distance instanceof AverageLinkDistance) {
+			return new NNChainEngine();
+		} else if (distance instanceof LanceWilliamsDistance) {
+			return new LanceWilliamsEngine();
+		}
+		return new GreedyMergeEngine();
+	}
+
+	/**
+	 * Esegue il clustering dei dati forniti delegando la costruzione dei livelli del
+	 * dendrogramma al {@link MiningEngine} indicato.
+	 *
+	 * @param data Esempi su cui lavorare.
+	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @param engine Strategia con cui costruire i livelli del dendrogramma.
+	 * @throws NoDataException Se il dataset non contiene esempi.
+	 */
+	public void mine(Data data, ClusterDistance distance, MiningEngine engine) throws NoDataException {
+		mine(data, distance, engine, new CancellationToken());
+	}
+
+	/**
+	 * Esegue il clustering dei dati forniti come {@link #mine(Data, ClusterDistance, MiningEngine)},
+	 * controllando tra una fusione e l'altra, e durante il calcolo delle distanze, se va interrotto.
+	 * <p>
+	 * Se il clustering viene interrotto e la strategia ha già completato alcuni livelli (come
+	 * {@link LanceWilliamsEngine} e {@link GreedyMergeEngine}, che li costruiscono in ordine), il
+	 * dendrogramma conserva quei livelli e {@link #isPartial()} restituisce {@code true}; altrimenti
+	 * il clustering viene abbandonato sollevando l'eccezione.
+	 *
+	 * @param data Esempi su cui lavorare.
+	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @param engine Strategia con cui costruire i livelli del dendrogramma.
+	 * @param token Richiesta di interruzione del clustering.
+	 * @throws NoDataException Se il dataset non contiene esempi.
+	 * @throws MiningCancelledException Se il clustering viene interrotto senza livelli utilizzabili.
+	 */
+	public void mine(Data data, ClusterDistance distance, MiningEngine engine, CancellationToken token)
+			throws NoDataException, MiningCancelledException {
+
+		if (data.getNumberOfExample() == 0) {
+			throw new NoDataException("Il dataset non contiene esempi.");
+		}
 
 		try {
 
@@ -73,19 +228,14 @@ public class HierachicalClusterMiner implements Serializable {
 				throw new InvalidDepthException("profondità maggiore del numero degli esempi: " + dendrogram.getDepth() + " > " + data.getNumberOfExample());
 			}
 
-			ClusterSet cSet = new ClusterSet(data.getNumberOfExample());
-			for (int i = 0; i < data.getNumberOfExample(); i++) {
-				Cluster c = new Cluster();
-				c.addData(i);
-				cSet.add(c);
-			}
-
-			dendrogram.setClusterSet(cSet, 0);
-
-			for (int i = 1; i < dendrogram.getDepth(); i++) {
-				cSet = cSet.mergeClosestClusters(distance, data);
-				dendrogram.setClusterSet(cSet, i);
+			partial = false;
+			if (engine.usesDistanceMatrix(distance)) {
+				// calcolata a parte per misurarne la durata separatamente dalle fusioni
+				data.distance(token);
 			}
+			long start = System.nanoTime();
+			engine.mine(data, distance, dendrogram, token);
+			ServerMetrics.shared().record(Phase.MERGE, start);
 
 		} catch (InvalidDepthException e) {
 
@@ -94,7 +244,15 @@ public class HierachicalClusterMiner implements Serializable {
 
 			dendrogram = new Dendrogram(data.getNumberOfExample());
 
-			this.mine(data, distance);
+			this.mine(data, distance, engine, token);
+
+		} catch (MiningCancelledException e) {
+
+			if (e.getLevels() == 0) {
+				throw e;
+			}
+			System.out.println(e.getMessage() + ": conservati " + e.getLevels() + " livelli");
+			partial = true;
 
 		}
 	}
@@ -103,11 +261,16 @@ public class HierachicalClusterMiner implements Serializable {
 	// Metodi per Serializzazione e de-Serializzazione
 	// ObjectInputStream e ObjectOutStream: stream di Manipolazione che utilizzati congiutamente a un
 	// OutputStream e un InputStream in questo caso File, permettono lo stream dei dati in maniera binaria Da e Verso il File.
+	// I dendrogrammi memorizzati come sequenza di fusioni sono invece salvati nel formato binario di DendrogramFile,
+	// letto mappando il file in memoria.
 	//
 	//**********************************************************************************************************************
 
 	/**
 	 * Metodo per il recupero di un oggetto {@code HierachicalClusterMiner} da un file. (de-Serializzazione)
+	 * <p>
+	 * Sono supportati sia i file nel formato binario di {@link DendrogramFile} sia quelli salvati
+	 * tramite serializzazione Java.
 	 *
 	 * @param filename Nome del file / Directory da cui leggere l'oggetto.
 	 * @return Oggetto recuperato dal file.
@@ -124,13 +287,25 @@ public class HierachicalClusterMiner implements Serializable {
 		// Percorso completo del file
 		String filePath = directory + File.separator + filename;
 
-		// Lettura dell'oggetto dal file
-		try (ObjectInputStream inStream = new ObjectInputStream(new FileInputStream(filePath))) {
-			return (HierachicalClusterMiner) inStream.readObject();
+		long start = System.nanoTime();
+		try {
+			if (DendrogramFile.isBinary(Path.of(filePath))) {
+				return new HierachicalClusterMiner(new Dendrogram(DendrogramFile.read(Path.of(filePath))));
+			}
+
+			// Lettura dell'oggetto dal file
+			try (ObjectInputStream inStream = new ObjectInputStream(new FileInputStream(filePath))) {
+				return (HierachicalClusterMiner) inStream.readObject();
+			}
+		} finally {
+			ServerMetrics.shared().record(Phase.FILE_LOAD, start);
 		}
 	}
 	/**
 	 * Metodo per il salvataggio su file di un oggetto {@code HierachicalClusterMiner} (Serializzazione).
+	 * <p>
+	 * Se il dendrogramma è memorizzato come sequenza di fusioni viene utilizzato il formato binario
+	 * di {@link DendrogramFile}, comprensivo dell'indice dei livelli.
 	 *
 	 * @param filename Nome del file / Directory su cui scrivere l'oggetto.
 	 * @throws FileNotFoundException Lanciata in caso il file specificato non esista.
@@ -149,10 +324,23 @@ public class HierachicalClusterMiner implements Serializable {
 		// Percorso completo del file con estensione corretta
 		String filePath = directory + File.separator + filename + ".HCM";
 
-		// Scrittura dell'oggetto nel file
-		try (ObjectOutputStream outStream = new ObjectOutputStream(new FileOutputStream(filePath))) {
-			outStream.writeObject(this);
+		long start = System.nanoTime();
+		try {
+			if (dendrogram.getMerges() != null) {
+				DendrogramFile.write(Path.of(filePath), dendrogram.getMerges(), true);
+				System.out.println("Dendrogramma salvato in: " + filePath);
+				return;
+			}
+
+			// Scrittura dell'oggetto nel file, sostituito senza sovrascriverlo perché potrebbe essere mappato in memoria
+			DendrogramFile.replace(Path.of(filePath), stream -> {
+				ObjectOutputStream outStream = new ObjectOutputStream(stream);
+				outStream.writeObject(this);
+				outStream.flush();
+			});
 			System.out.println("Oggetto serializzato in: " + filePath);
+		} finally {
+			ServerMetrics.shared().record(Phase.FILE_SAVE, start);
 		}
 	}
 
@@ -0,0 +1,340 @@
+package src.clustering;
+
+import src.data.Data;
+import src.data.DistanceMatrix;
+import src.distance.ClusterDistance;
+import src.distance.LanceWilliamsDistance;
+import src.exceptions.MiningCancelledException;
+
+import java.util.Arrays;
+
+/**
+ * Implementazione di {@link MiningEngine} basata sulla formula di aggiornamento di Lance-Williams.
+ * <p>
+ * Le distanze tra cluster partono da una matrice delle distanze riservata al clustering
+ * ({@link Data#newDistance(CancellationToken)}), aggiornata sul posto. Dopo ogni fusione viene aggiornata soltanto la riga del cluster fuso,
+ * tramite {@link LanceWilliamsDistance#update(double, double, double, int, int, int)}, senza
+ * scorrere nuovamente gli esempi dei cluster.
+ * </p>
+ * <p>
+ * Per ogni cluster viene inoltre ricordato il cluster più vicino tra quelli che lo seguono: la
+ * coppia da fondere si trova quindi scorrendo una sola riga per cluster, e dopo ogni fusione sono
+ * ricalcolati solo i vicini che coinvolgevano i due cluster fusi.
+ * </p>
+ * <p>
+ * I cluster attivi sono mantenuti nello stesso ordine delle posizioni del {@link ClusterSet} di ogni
+ * livello e le coppie sono esaminate nello stesso ordine di
+ * {@link ClusterSet#mergeClosestClusters(ClusterDistance, Data)}, per cui il dendrogramma prodotto
+ * coincide con quello di {@link GreedyMergeEngine}.
+ * </p>
+ * <p>
+ * Se l'aggiornamento non è esatto ({@link LanceWilliamsDistance#isExactUpdate()}), la distanza aggiornata e
+ * quella che {@link GreedyMergeEngine} calcola sugli esempi possono differire per arrotondamento: quando più
+ * coppie hanno distanze che differiscono dalla minima meno di {@link #TIE_TOLERANCE}, la coppia da fondere
+ * viene scelta confrontando le distanze calcolate sugli esempi.
+ * </p>
+ */
+public class LanceWilliamsEngine implements MiningEngine {
+
+	/**
+	 * Differenza relativa entro cui due distanze aggiornate possono corrispondere, a meno di arrotondamenti,
+	 * alla stessa distanza calcolata sugli esempi.
+	 */
+	static final double TIE_TOLERANCE = 1e-9;
+
+	/**
+	 * Costruisce i livelli del dendrogramma aggiornando la matrice di prossimità dopo ogni fusione.
+	 * Se la metrica non supporta l'aggiornamento di Lance-Williams il lavoro viene delegato a
+	 * {@link GreedyMergeEngine}.
+	 *
+	 * @param data Esempi su cui lavorare.
+	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @param dendrogram Dendrogramma da avvalorare.
+	 * @param token Richiesta di interruzione del clustering; se interrotto il dendrogramma conserva i livelli completati.
+	 */
+	public void mine(Data data, ClusterDistance distance, Dendrogram dendrogram, CancellationToken token) {
+		if (!(distance instanceof LanceWilliamsDistance)) {
+			new GreedyMergeEngine().mine(data, distance, dendrogram, token);
+			return;
+		}
+		LanceWilliamsDistance linkage = (LanceWilliamsDistance) distance;
+
+		int n = data.getNumberOfExample();
+		int merges = dendrogram.getDepth() - 1;
+		int[] left = new int[merges];
+		int[] right = new int[merges];
+		double[] height = new double[merges];
+
+		// Matrice di prossimità indicizzata sugli esempi di partenza: ogni cluster attivo
+		// è identificato dall'indice del suo primo esempio.
+		DistanceMatrix proximity = data.newDistance(token);
+
+		// active[p] è l'identificativo del cluster nella posizione p del ClusterSet corrente
+		int[] active = new int[n];
+		int[] size = new int[n];
+		for (int i = 0; i < n; i++) {
+			active[i] = i;
+			size[i] = data.getWeight(i);
+		}
+		int k = n;
+
+		// nearest[c] è il cluster più vicino a c tra quelli che lo seguono nel ClusterSet,
+		// nearestDistance[c] la relativa distanza; sono mantenuti da un livello all'altro
+		int[] nearest = new int[n];
+		double[] nearestDistance = new double[n];
+		double[] row = new double[n];
+		// se l'aggiornamento non è esatto, nearTie[c] indica se un altro cluster che segue c potrebbe essere
+		// alla stessa distanza di nearest[c] a meno di arrotondamenti; tra questi candidati, resolved[c] è il
+		// più vicino secondo la distanza calcolata sugli esempi e resolvedDistance[c] tale distanza, NaN
+		// finché non serve o dopo una fusione che coinvolge i candidati
+		boolean[] nearTie = linkage.isExactUpdate() ? null : new boolean[n];
+		int[] resolved = nearTie == null ? null : new int[n];
+		double[] resolvedDistance = nearTie == null ? null : new double[n];
+		ClusterMembers members = nearTie == null ? null : new ClusterMembers(n);
+		for (int p = 0; p < k; p++) {
+			token.throwIfCancelled();
+			updateNearest(p, active, k, proximity, nearest, nearestDistance, row, size, nearTie);
+			if (nearTie != null) {
+				resolvedDistance[active[p]] = Double.NaN;
+			}
+		}
+
+		for (int level = 1; level < dendrogram.getDepth(); level++) {
+			if (token.isCancelled()) {
+				// le fusioni trovate finora definiscono i primi livelli del dendrogramma
+				dendrogram.setMerges(n, left, right, height, level - 1);
+				throw new MiningCancelledException(token.getReason(), level);
+			}
+			double minDistance = Double.MAX_VALUE;
+			// distanza minima dal più vicino degli altri cluster
+			double otherDistance = Double.MAX_VALUE;
+			int closestP1 = 0;
+
+			for (int p = 0; p < k - 1; p++) {
+				double tmpDistance = nearestDistance[active[p]];
+				if (tmpDistance < minDistance) {
+					otherDistance = minDistance;
+					minDistance = tmpDistance;
+					closestP1 = p;
+				} else if (tmpDistance < otherDistance) {
+					otherDistance = tmpDistance;
+				}
+			}
+
+			int a = active[closestP1];
+			int b = nearest[a] >= 0 ? nearest[a] : active[closestP1 + 1];
+
+			if (nearTie != null) {
+				double limit = minDistance * (1 + TIE_TOLERANCE);
+				if (nearTie[a] || otherDistance <= limit) {
+					// tra le coppie candidate si sceglie la prima con la minima distanza calcolata sugli esempi
+					double best = Double.MAX_VALUE;
+					for (int p = 0; p < k - 1; p++) {
+						int c = active[p];
+						if (nearestDistance[c] <= limit) {
+							if (Double.isNaN(resolvedDistance[c])) {
+								resolve(p, active, k, proximity, nearest, nearestDistance, nearTie, resolved, resolvedDistance,
+										size, members, distance, data);
+							}
+							if (resolvedDistance[c] < best) {
+								best = resolvedDistance[c];
+								a = c;
+								b = resolved[c];
+							}
+						}
+					}
+					closestP1 = Arrays.binarySearch(active, 0, k, a);
+					minDistance = proximity.get(a, b);
+				}
+			}
+			int closestP2 = Arrays.binarySearch(active, closestP1 + 1, k, b);
+
+			for (int p = 0; p < k; p++) {
+				int c = active[p];
+				if (c != a && c != b) {
+					proximity.set(a, c, linkage.update(proximity.get(a, c), proximity.get(b, c), minDistance, size[a], size[b], size[c]));
+				}
+			}
+			size[a] += size[b];
+			if (members != null) {
+				members.merge(a, b);
+			}
+			System.arraycopy(active, closestP2 + 1, active, closestP2, k - closestP2 - 1);
+			k--;
+
+			// si aggiornano solo i vicini che coinvolgono i due cluster fusi
+			for (int p = 0; p < k && active[p] < b; p++) {
+				int c = active[p];
+				if (c == a || nearest[c] == a || nearest[c] == b) {
+					updateNearest(p, active, k, proximity, nearest, nearestDistance, row, size, nearTie);
+					if (nearTie != null) {
+						resolvedDistance[c] = Double.NaN;
+					}
+				} else {
+					if (nearTie != null && (resolved[c] == a || resolved[c] == b)) {
+						resolvedDistance[c] = Double.NaN;
+					}
+					if (c < a) {
+						double tmpDistance = proximity.get(c, a);
+						if (tmpDistance < nearestDistance[c] || (tmpDistance == nearestDistance[c] && a < nearest[c])) {
+							if (nearTie != null) {
+								nearTie[c] |= nearestDistance[c] <= tmpDistance * (1 + TIE_TOLERANCE);
+								resolvedDistance[c] = Double.NaN;
+							}
+							nearest[c] = a;
+							nearestDistance[c] = tmpDistance;
+						} else if (nearTie != null && tmpDistance <= nearestDistance[c] * (1 + TIE_TOLERANCE)) {
+							nearTie[c] = true;
+							resolvedDistance[c] = Double.NaN;
+						}
+					}
+				}
+			}
+
+			left[level - 1] = a;
+			right[level - 1] = b;
+			height[level - 1] = minDistance;
+		}
+
+		dendrogram.setMerges(n, left, right, height);
+	}
+
+	/**
+	 * Ricalcola il cluster più vicino a quello in posizione {@code p} tra i cluster che lo seguono.
+	 * A parità di distanza viene scelto il primo, come nella ricerca della coppia più vicina di
+	 * {@link ClusterSet#mergeClosestClusters(ClusterDistance, Data)}.
+	 * <p>
+	 * Quando i cluster attivi sono abbastanza fitti la riga della matrice viene letta con un'unica
+	 * copia a blocco, che su una matrice mappata su file evita un accesso per ogni coppia.
+	 * </p>
+	 * <p>
+	 * Se {@code nearTie} non è null viene anche indicato se un altro cluster ha una distanza che differisce
+	 * dalla minima meno di {@link #TIE_TOLERANCE}, e potrebbe quindi essere il più vicino a meno di
+	 * arrotondamenti. Non lo è un cluster alla stessa distanza che segue il più vicino, se nessuno dei due
+	 * è stato fuso: tra due esempi di peso unitario la distanza aggiornata è quella calcolata sugli esempi.
+	 * </p>
+	 *
+	 * @param p Posizione del cluster.
+	 * @param active Identificativi dei cluster attivi, in ordine di posizione.
+	 * @param k Numero di cluster attivi.
+	 * @param proximity Matrice di prossimità tra i cluster.
+	 * @param nearest Cluster più vicino a ogni cluster, aggiornato sul posto.
+	 * @param nearestDistance Distanza dal cluster più vicino, aggiornata sul posto.
+	 * @param row Array di appoggio per la lettura a blocco della riga, lungo almeno quanto gli esempi.
+	 * @param size Peso complessivo degli esempi di ogni cluster, utilizzato solo se {@code nearTie} non è null.
+	 * @param nearTie Possibili pareggi di ogni cluster, aggiornati sul posto; null se non servono.
+	 */
+	static void updateNearest(int p, int[] active, int k, DistanceMatrix proximity, int[] nearest, double[] nearestDistance,
+			double[] row, int[] size, boolean[] nearTie) {
+		int c = active[p];
+		double minDistance = Double.MAX_VALUE;
+		int closest = -1;
+		// minima distanza tra gli altri cluster, e tra quelli la cui distanza può essere arrotondata
+		double other = Double.MAX_VALUE;
+		double otherRounded = Double.MAX_VALUE;
+		int from = p + 1 < k ? active[p + 1] : 0;
+		boolean block = p + 1 < k && active[k - 1] + 1 - from <= 4 * (k - p - 1);
+		if (block) {
+			proximity.getRow(c, from, active[k - 1] + 1, row);
+		}
+		for (int q = p + 1; q < k; q++) {
+			double tmpDistance = block ? row[active[q] - from] : proximity.get(c, active[q]);
+			if (tmpDistance < minDistance) {
+				if (nearTie != null && closest >= 0) {
+					other = minDistance;
+					if (rounded(c, closest, size)) {
+						otherRounded = minDistance;
+					}
+				}
+				minDistance = tmpDistance;
+				closest = active[q];
+			} else if (nearTie != null) {
+				other = Math.min(other, tmpDistance);
+				if (rounded(c, active[q], size)) {
+					otherRounded = Math.min(otherRounded, tmpDistance);
+				}
+			}
+		}
+		nearest[c] = closest;
+		nearestDistance[c] = minDistance;
+		if (nearTie != null) {
+			double competitor = closest >= 0 && rounded(c, closest, size) ? other : otherRounded;
+			nearTie[c] = competitor <= minDistance * (1 + TIE_TOLERANCE);
+		}
+	}
+
+	/**
+	 * Sceglie, tra i cluster che seguono quello in posizione {@code p} e la cui distanza differisce dalla
+	 * minima meno di {@link #TIE_TOLERANCE}, il più vicino secondo la distanza calcolata sugli esempi;
+	 * a parità di distanza viene scelto il primo.
+	 *
+	 * @param p Posizione del cluster.
+	 * @param active Identificativi dei cluster attivi, in ordine di posizione.
+	 * @param k Numero di cluster attivi.
+	 * @param proximity Matrice di prossimità tra i cluster.
+	 * @param nearest Cluster più vicino a ogni cluster secondo la distanza aggiornata.
+	 * @param nearestDistance Distanza aggiornata dal cluster più vicino.
+	 * @param nearTie Possibili pareggi di ogni cluster.
+	 * @param resolved Cluster più vicino secondo la distanza calcolata sugli esempi, aggiornato sul posto.
+	 * @param resolvedDistance Distanza calcolata sugli esempi dal cluster più vicino, aggiornata sul posto.
+	 * @param size Peso complessivo degli esempi di ogni cluster.
+	 * @param members Esempi di ogni cluster.
+	 * @param distance Metrica di distanza tra cluster.
+	 * @param data Esempi su cui lavorare.
+	 */
+	private static void resolve(int p, int[] active, int k, DistanceMatrix proximity, int[] nearest, double[] nearestDistance,
+			boolean[] nearTie, int[] resolved, double[] resolvedDistance, int[] size, ClusterMembers members,
+			ClusterDistance distance, Data data) {
+		int c = active[p];
+		resolved[c] = nearest[c];
+		resolvedDistance[c] = mean(c, nearest[c], nearestDistance[c], size, members, distance, data);
+		if (!nearTie[c]) {
+			return;
+		}
+		double limit = nearestDistance[c] * (1 + TIE_TOLERANCE);
+		for (int q = p + 1; q < k; q++) {
+			int d = active[q];
+			double tmpDistance = proximity.get(c, d);
+			if (d != nearest[c] && tmpDistance <= limit) {
+				double tmpMean = mean(c, d, tmpDistance, size, members, distance, data);
+				if (tmpMean < resolvedDistance[c] || (tmpMean == resolvedDistance[c] && d < resolved[c])) {
+					resolved[c] = d;
+					resolvedDistance[c] = tmpMean;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indica se la distanza aggiornata tra due cluster può differire per arrotondamento da quella
+	 * calcolata sugli esempi, ovvero se uno dei due non è un singolo esempio di peso unitario.
+	 *
+	 * @param c Primo cluster.
+	 * @param d Secondo cluster.
+	 * @param size Peso complessivo degli esempi di ogni cluster.
+	 * @return {@code true} se la distanza può essere arrotondata.
+	 */
+	private static boolean rounded(int c, int d, int[] size) {
+		return size[c] != 1 || size[d] != 1;
+	}
+
+	/**
+	 * Calcola la distanza tra due cluster sui loro esempi, come farebbe
+	 * {@link ClusterSet#mergeClosestClusters(ClusterDistance, Data)}.
+	 *
+	 * @param c Cluster in posizione minore.
+	 * @param d Cluster in posizione maggiore.
+	 * @param updated Distanza aggiornata tra i due cluster, già esatta se nessuno dei due è stato fuso.
+	 * @param size Peso complessivo degli esempi di ogni cluster.
+	 * @param members Esempi di ogni cluster.
+	 * @param distance Metrica di distanza tra cluster.
+	 * @param data Esempi su cui lavorare.
+	 * @return Distanza tra i due cluster.
+	 */
+	private static double mean(int c, int d, double updated, int[] size, ClusterMembers members, ClusterDistance distance, Data data) {
+		if (!rounded(c, d, size)) {
+			return updated;
+		}
+		return distance.distance(members.cluster(c), members.cluster(d), data);
+	}
+}
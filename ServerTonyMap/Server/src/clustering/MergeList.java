@@ -0,0 +1,290 @@
+package src.clustering;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Rappresentazione compatta di un dendrogramma come sequenza di fusioni.
+ * <p>
+ * La fusione {@code i} unisce, per passare dal livello {@code i} al livello {@code i + 1}, i due
+ * cluster identificati dal loro esempio di indice minimo {@code left(i) < right(i)}; il livello 0
+ * contiene un cluster per ognuno degli esempi. Per ogni fusione è memorizzata anche la distanza
+ * tra i due cluster (altezza della fusione).
+ * </p>
+ * <p>
+ * Lo spazio occupato è O(profondità), contro O(profondità · n) dei {@link ClusterSet} di tutti i livelli.
+ * I valori sono letti tramite buffer NIO, che possono avvolgere array in memoria oppure porzioni
+ * di un file mappato in memoria da {@link DendrogramFile}.
+ * </p>
+ * <p>
+ * Facoltativamente può essere presente un indice dei livelli, che per ogni fusione riporta le
+ * posizioni dei due cluster nel {@link ClusterSet} del livello a cui viene applicata.
+ * </p>
+ */
+class MergeList implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Numero di esempi del dataset */
+	private int numberOfExamples;
+
+	/** Esempio di indice minimo del primo cluster di ogni fusione */
+	private transient IntBuffer left;
+
+	/** Esempio di indice minimo del secondo cluster di ogni fusione */
+	private transient IntBuffer right;
+
+	/** Altezza di ogni fusione */
+	private transient DoubleBuffer height;
+
+	/** Posizione del primo cluster di ogni fusione nel ClusterSet del livello, null se l'indice dei livelli non è presente */
+	private transient IntBuffer leftPosition;
+
+	/** Posizione del secondo cluster di ogni fusione nel ClusterSet del livello, null se l'indice dei livelli non è presente */
+	private transient IntBuffer rightPosition;
+
+	/**
+	 * Crea la sequenza di fusioni a partire da buffer che contengono identificativi già normalizzati.
+	 *
+	 * @param numberOfExamples Numero di esempi del dataset.
+	 * @param left Esempio di indice minimo del primo cluster di ogni fusione.
+	 * @param right Esempio di indice minimo del secondo cluster di ogni fusione.
+	 * @param height Altezza di ogni fusione.
+	 * @param leftPosition Posizione del primo cluster di ogni fusione, oppure null.
+	 * @param rightPosition Posizione del secondo cluster di ogni fusione, oppure null.
+	 */
+	MergeList(int numberOfExamples, IntBuffer left, IntBuffer right, DoubleBuffer height,
+			IntBuffer leftPosition, IntBuffer rightPosition) {
+		this.numberOfExamples = numberOfExamples;
+		this.left = left;
+		this.right = right;
+		this.height = height;
+		this.leftPosition = leftPosition;
+		this.rightPosition = rightPosition;
+	}
+
+	/**
+	 * Crea la sequenza delle prime {@code count} fusioni, in cui ogni cluster è indicato da un
+	 * suo esempio qualsiasi, normalizzando gli identificativi sull'esempio di indice minimo.
+	 *
+	 * @param numberOfExamples Numero di esempi del dataset.
+	 * @param count Numero di fusioni da memorizzare.
+	 * @param left Un esempio del primo cluster di ogni fusione.
+	 * @param right Un esempio del secondo cluster di ogni fusione.
+	 * @param height Altezza di ogni fusione.
+	 * @return Sequenza di fusioni normalizzata.
+	 */
+	static MergeList normalize(int numberOfExamples, int count, int[] left, int[] right, double[] height) {
+		int[] normalizedLeft = new int[count];
+		int[] normalizedRight = new int[count];
+		double[] normalizedHeight = new double[count];
+
+		UnionFind clusters = new UnionFind(numberOfExamples);
+		for (int i = 0; i < count; i++) {
+			int a = clusters.min(left[i]);
+			int b = clusters.min(right[i]);
+			clusters.union(a, b);
+			normalizedLeft[i] = Math.min(a, b);
+			normalizedRight[i] = Math.max(a, b);
+			normalizedHeight[i] = height[i];
+		}
+		return new MergeList(numberOfExamples, IntBuffer.wrap(normalizedLeft), IntBuffer.wrap(normalizedRight),
+				DoubleBuffer.wrap(normalizedHeight), null, null);
+	}
+
+	/**
+	 * Restituisce il numero di esempi del dataset.
+	 *
+	 * @return Numero di esempi.
+	 */
+	int getNumberOfExamples() {
+		return numberOfExamples;
+	}
+
+	/**
+	 * Restituisce il numero di fusioni memorizzate.
+	 *
+	 * @return Numero di fusioni.
+	 */
+	int size() {
+		return left.limit();
+	}
+
+	/**
+	 * Restituisce il primo cluster della fusione {@code i}.
+	 *
+	 * @param i Indice della fusione.
+	 * @return Esempio di indice minimo del primo cluster.
+	 */
+	int getLeft(int i) {
+		return left.get(i);
+	}
+
+	/**
+	 * Restituisce il secondo cluster della fusione {@code i}.
+	 *
+	 * @param i Indice della fusione.
+	 * @return Esempio di indice minimo del secondo cluster.
+	 */
+	int getRight(int i) {
+		return right.get(i);
+	}
+
+	/**
+	 * Restituisce l'altezza della fusione {@code i}.
+	 *
+	 * @param i Indice della fusione.
+	 * @return Distanza tra i due cluster fusi.
+	 */
+	double getHeight(int i) {
+		return height.get(i);
+	}
+
+	/**
+	 * Indica se è presente l'indice dei livelli.
+	 *
+	 * @return {@code true} se sono note le posizioni dei cluster fusi.
+	 */
+	boolean hasLevelIndex() {
+		return leftPosition != null;
+	}
+
+	/**
+	 * Restituisce la posizione del primo cluster della fusione {@code i} nel ClusterSet del livello {@code i}.
+	 *
+	 * @param i Indice della fusione.
+	 * @return Posizione del cluster, oppure -1 se l'indice dei livelli non è presente.
+	 */
+	int getLeftPosition(int i) {
+		return leftPosition != null ? leftPosition.get(i) : -1;
+	}
+
+	/**
+	 * Restituisce la posizione del secondo cluster della fusione {@code i} nel ClusterSet del livello {@code i}.
+	 *
+	 * @param i Indice della fusione.
+	 * @return Posizione del cluster, oppure -1 se l'indice dei livelli non è presente.
+	 */
+	int getRightPosition(int i) {
+		return rightPosition != null ? rightPosition.get(i) : -1;
+	}
+
+	/**
+	 * Calcola l'indice dei livelli: la posizione di un cluster in un ClusterSet è il numero di
+	 * cluster con esempio di indice minimo inferiore al suo, contati con un albero di Fenwick
+	 * sugli identificativi dei cluster ancora attivi.
+	 *
+	 * @return Posizioni dei cluster fusi, nell'ordine {@code [left, right]}.
+	 */
+	int[][] computeLevelIndex() {
+		int n = numberOfExamples;
+		int[] fenwick = new int[n + 1];
+		for (int i = 1; i <= n; i++) {
+			fenwick[i]++;
+			int parent = i + (i & -i);
+			if (parent <= n) {
+				fenwick[parent] += fenwick[i];
+			}
+		}
+
+		int[] lp = new int[size()];
+		int[] rp = new int[size()];
+		for (int m = 0; m < size(); m++) {
+			lp[m] = countActiveBelow(fenwick, getLeft(m));
+			rp[m] = countActiveBelow(fenwick, getRight(m));
+			// il secondo cluster non è più attivo dopo la fusione
+			for (int i = getRight(m) + 1; i <= n; i += i & -i) {
+				fenwick[i]--;
+			}
+		}
+		return new int[][] { lp, rp };
+	}
+
+	/**
+	 * Conta i cluster attivi con identificativo minore di {@code id}.
+	 *
+	 * @param fenwick Albero di Fenwick dei cluster attivi.
+	 * @param id Identificativo del cluster.
+	 * @return Numero di cluster attivi che lo precedono.
+	 */
+	private static int countActiveBelow(int[] fenwick, int id) {
+		int count = 0;
+		for (int i = id; i > 0; i -= i & -i) {
+			count += fenwick[i];
+		}
+		return count;
+	}
+
+	/**
+	 * Ricostruisce il {@link ClusterSet} di un livello applicando le prime {@code level} fusioni.
+	 * <p>
+	 * Gli esempi sono scorsi in ordine crescente, per cui i cluster risultano ordinati per esempio
+	 * di indice minimo, come nei ClusterSet costruiti fusione dopo fusione.
+	 *
+	 * @param level Livello da ricostruire.
+	 * @return ClusterSet del livello.
+	 */
+	ClusterSet materialize(int level) {
+		UnionFind clusters = new UnionFind(numberOfExamples);
+		for (int i = 0; i < level; i++) {
+			clusters.union(getLeft(i), getRight(i));
+		}
+
+		int k = numberOfExamples - level;
+		Cluster[] byRoot = new Cluster[numberOfExamples];
+		ClusterSet cSet = new ClusterSet(k);
+		for (int i = 0; i < numberOfExamples; i++) {
+			int root = clusters.find(i);
+			if (byRoot[root] == null) {
+				byRoot[root] = new Cluster();
+				cSet.append(byRoot[root]);
+			}
+			byRoot[root].addData(i);
+		}
+		return cSet;
+	}
+
+	/**
+	 * Serializza la sequenza di fusioni scrivendo il contenuto dei buffer.
+	 *
+	 * @param out Stream di output.
+	 * @throws IOException Se la scrittura fallisce.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		int count = size();
+		out.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			out.writeInt(getLeft(i));
+			out.writeInt(getRight(i));
+			out.writeDouble(getHeight(i));
+		}
+	}
+
+	/**
+	 * Ricostruisce la sequenza di fusioni serializzata da {@link #writeObject(ObjectOutputStream)}.
+	 *
+	 * @param in Stream di input.
+	 * @throws IOException Se la lettura fallisce.
+	 * @throws ClassNotFoundException Se una classe serializzata non è disponibile.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int count = in.readInt();
+		int[] l = new int[count];
+		int[] r = new int[count];
+		double[] h = new double[count];
+		for (int i = 0; i < count; i++) {
+			l[i] = in.readInt();
+			r[i] = in.readInt();
+			h[i] = in.readDouble();
+		}
+		left = IntBuffer.wrap(l);
+		right = IntBuffer.wrap(r);
+		height = DoubleBuffer.wrap(h);
+	}
+}
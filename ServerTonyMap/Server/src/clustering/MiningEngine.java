@@ -0,0 +1,57 @@
+package src.clustering;
+
+import src.data.Data;
+import src.distance.ClusterDistance;
+import src.exceptions.MiningCancelledException;
+
+/**
+ * Interfaccia che rappresenta una strategia di costruzione dei livelli di un {@link Dendrogram}.
+ * <p>
+ * Ogni implementazione riceve un dendrogramma già dimensionato e deve avvalorarne tutti i livelli:
+ * il livello 0 contiene un cluster separato per ogni esempio e ogni livello successivo è ottenuto
+ * dal precedente fondendo la coppia di cluster più vicini secondo la metrica indicata. Il dataset
+ * contiene almeno un esempio: {@link HierachicalClusterMiner} rifiuta i dataset vuoti prima di
+ * invocare la strategia.
+ * </p>
+ */
+public interface MiningEngine {
+
+	/**
+	 * Costruisce i livelli del dendrogramma sugli esempi del dataset.
+	 *
+	 * @param data Esempi su cui lavorare.
+	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @param dendrogram Dendrogramma da avvalorare, la cui profondità non supera il numero di esempi.
+	 */
+	default void mine(Data data, ClusterDistance distance, Dendrogram dendrogram) {
+		mine(data, distance, dendrogram, new CancellationToken());
+	}
+
+	/**
+	 * Costruisce i livelli del dendrogramma sugli esempi del dataset, controllando periodicamente
+	 * se il clustering va interrotto.
+	 * <p>
+	 * Se il clustering viene interrotto è sollevata una {@link MiningCancelledException}: le strategie
+	 * che costruiscono i livelli in ordine conservano nel dendrogramma quelli già completati e ne
+	 * indicano il numero nell'eccezione, le altre lasciano il dendrogramma inutilizzabile.
+	 *
+	 * @param data Esempi su cui lavorare.
+	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @param dendrogram Dendrogramma da avvalorare, la cui profondità non supera il numero di esempi.
+	 * @param token Richiesta di interruzione del clustering.
+	 * @throws MiningCancelledException Se il clustering viene interrotto.
+	 */
+	void mine(Data data, ClusterDistance distance, Dendrogram dendrogram, CancellationToken token)
+			throws MiningCancelledException;
+
+	/**
+	 * Indica se la strategia utilizza la matrice delle distanze condivisa del dataset ({@link Data#distance()}),
+	 * che in tal caso viene calcolata e memorizzata prima di avviare la costruzione dei livelli.
+	 *
+	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @return {@code true} se la strategia legge la matrice delle distanze.
+	 */
+	default boolean usesDistanceMatrix(ClusterDistance distance) {
+		return true;
+	}
+}
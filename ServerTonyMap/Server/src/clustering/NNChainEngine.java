@@ -0,0 +1,330 @@
+package src.clustering;
+
+import src.data.Data;
+import src.data.DistanceMatrix;
+import src.distance.AverageLinkDistance;
+import src.distance.ClusterDistance;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Implementazione di {@link MiningEngine} dedicata all'Average Linkage, basata sull'algoritmo
+ * della catena dei vicini più prossimi (nearest-neighbor chain).
+ * <p>
+ * L'algoritmo estende una catena di cluster in cui ognuno è il più vicino al precedente, finché
+ * gli ultimi due non sono reciprocamente i più vicini: questi vengono fusi e la ricerca riprende
+ * dalla parte rimanente della catena. Poiché l'Average Linkage è riducibile, la gerarchia ottenuta
+ * coincide con quella della fusione della coppia globalmente più vicina, ma richiede tempo O(n²).
+ * </p>
+ * <p>
+ * Le fusioni, trovate in ordine sparso, sono ordinate per altezza crescente; a parità di altezza
+ * sono applicate nello stesso ordine che seguirebbe {@link ClusterSet#mergeClosestClusters(ClusterDistance, Data)}.
+ * Le distanze aggiornate possono differire per arrotondamento da quelle calcolate sugli esempi, per cui
+ * due distanze che differiscono meno di {@link LanceWilliamsEngine#TIE_TOLERANCE} sono considerate uguali.
+ * Se durante la ricerca di un vicino più prossimo due candidati hanno la distanza minima
+ * la scelta non sarebbe più univoca: in questo caso il lavoro viene delegato a
+ * {@link LanceWilliamsEngine}, in modo da ottenere sempre lo stesso dendrogramma.
+ * </p>
+ */
+public class NNChainEngine implements MiningEngine {
+
+	/**
+	 * Costruisce i livelli del dendrogramma con l'algoritmo della catena dei vicini più prossimi.
+	 * Se la metrica non è {@link AverageLinkDistance} il lavoro viene delegato a {@link LanceWilliamsEngine}.
+	 *
+	 * @param data Esempi su cui lavorare.
+	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @param dendrogram Dendrogramma da avvalorare.
+	 * @param token Richiesta di interruzione del clustering.
+	 */
+	public void mine(Data data, ClusterDistance distance, Dendrogram dendrogram, CancellationToken token) {
+		if (!(distance instanceof AverageLinkDistance)) {
+			new LanceWilliamsEngine().mine(data, distance, dendrogram, token);
+			return;
+		}
+		AverageLinkDistance linkage = (AverageLinkDistance) distance;
+
+		int n = data.getNumberOfExample();
+		DistanceMatrix proximity = data.newDistance(token);
+
+		// active[p] è l'identificativo, ovvero l'indice del primo esempio, del cluster attivo in posizione p
+		int[] active = new int[n];
+		int[] size = new int[n];
+		double[] lastHeight = new double[n];
+		for (int i = 0; i < n; i++) {
+			active[i] = i;
+			size[i] = data.getWeight(i);
+		}
+		int k = n;
+
+		// nearest[c] è il cluster più vicino a c tra quelli che lo seguono, nearestDistance[c] la relativa
+		// distanza; sono mantenuti come in LanceWilliamsEngine, in modo che la distanza di x da un cluster
+		// che lo precede, memorizzata sulla colonna di x, venga letta solo se può essere la minima
+		int[] nearest = new int[n];
+		double[] nearestDistance = new double[n];
+		double[] row = new double[n];
+		for (int p = 0; p < k; p++) {
+			token.throwIfCancelled();
+			LanceWilliamsEngine.updateNearest(p, active, k, proximity, nearest, nearestDistance, row, null, null);
+		}
+
+		int merges = Math.max(n - 1, 0);
+		int[] left = new int[merges];
+		int[] right = new int[merges];
+		double[] height = new double[merges];
+
+		int[] chain = new int[n];
+		int top = 0;
+
+		for (int m = 0; m < merges; ) {
+			// le fusioni non sono trovate in ordine di altezza: un'interruzione non lascia livelli utilizzabili
+			token.throwIfCancelled();
+			if (top == 0) {
+				chain[top++] = active[0];
+			}
+
+			int x = chain[top - 1];
+			int previous = top > 1 ? chain[top - 2] : -1;
+			int y = previous;
+			double minDistance = previous >= 0 ? proximity.get(x, previous) : Double.POSITIVE_INFINITY;
+			// distanza minima tra gli altri candidati, per riconoscere un pareggio
+			double other = Double.POSITIVE_INFINITY;
+
+			// i cluster che seguono x sono sulla riga di x, letta a blocco se i cluster attivi sono abbastanza fitti
+			int px = Arrays.binarySearch(active, 0, k, x);
+			int from = px + 1 < k ? active[px + 1] : 0;
+			boolean block = px + 1 < k && active[k - 1] + 1 - from <= 4 * (k - px - 1);
+			if (block) {
+				proximity.getRow(x, from, active[k - 1] + 1, row);
+			}
+			for (int q = px + 1; q < k; q++) {
+				int c = active[q];
+				if (c != previous) {
+					double tmpDistance = block ? row[c - from] : proximity.get(x, c);
+					if (tmpDistance < minDistance) {
+						other = minDistance;
+						minDistance = tmpDistance;
+						y = c;
+					} else if (tmpDistance < other) {
+						other = tmpDistance;
+					}
+				}
+			}
+			// per i cluster che precedono x vale d(c, x) >= nearestDistance[c]
+			for (int q = 0; q < px; q++) {
+				int c = active[q];
+				if (c != previous && nearestDistance[c] <= minDistance * (1 + LanceWilliamsEngine.TIE_TOLERANCE)) {
+					double tmpDistance = nearest[c] == x ? nearestDistance[c] : proximity.get(c, x);
+					if (tmpDistance < minDistance) {
+						other = minDistance;
+						minDistance = tmpDistance;
+						y = c;
+					} else if (tmpDistance < other) {
+						other = tmpDistance;
+					}
+				}
+			}
+
+			if (other <= minDistance * (1 + LanceWilliamsEngine.TIE_TOLERANCE)) {
+				// la matrice già modificata non serve più: LanceWilliamsEngine ne copia una nuova
+				proximity = null;
+				new LanceWilliamsEngine().mine(data, distance, dendrogram, token);
+				return;
+			}
+
+			if (y != previous) {
+				chain[top++] = y;
+				continue;
+			}
+
+			// x e y sono reciprocamente i più vicini: il cluster fuso prende l'identificativo minore
+			top -= 2;
+			int a = Math.min(x, y);
+			int b = Math.max(x, y);
+			for (int q = 0; q < k; q++) {
+				int c = active[q];
+				if (c != a && c != b) {
+					double updated = linkage.update(proximity.get(a, c), proximity.get(b, c), minDistance, size[a], size[b], size[c]);
+					proximity.set(a, c, updated);
+					if (c < a && updated < nearestDistance[c]) {
+						nearest[c] = a;
+						nearestDistance[c] = updated;
+					}
+				}
+			}
+			size[a] += size[b];
+			int pb = Arrays.binarySearch(active, 0, k, b);
+			System.arraycopy(active, pb + 1, active, pb, k - pb - 1);
+			k--;
+
+			// si aggiornano solo i vicini che coinvolgevano i due cluster fusi
+			for (int q = 0; q < k && active[q] < b; q++) {
+				int c = active[q];
+				if (c == a || nearest[c] == a || nearest[c] == b) {
+					LanceWilliamsEngine.updateNearest(q, active, k, proximity, nearest, nearestDistance, row, null, null);
+				}
+			}
+
+			left[m] = a;
+			right[m] = b;
+			// l'altezza di una fusione non è mai inferiore a quella dei cluster che unisce
+			height[m] = Math.max(minDistance, Math.max(lastHeight[a], lastHeight[b]));
+			lastHeight[a] = height[m];
+			m++;
+		}
+
+		sortMerges(n, left, right, height, data, distance);
+		dendrogram.setMerges(n, left, right, height);
+	}
+
+	/**
+	 * Ordina le fusioni per altezza crescente. Le fusioni con la stessa altezza, a meno di
+	 * {@link LanceWilliamsEngine#TIE_TOLERANCE}, sono ordinate come farebbe la ricerca della coppia più
+	 * vicina sui {@link ClusterSet}, ovvero per distanza crescente calcolata sugli esempi e poi per indice
+	 * minimo crescente dei cluster coinvolti, rispettando l'ordine in cui sono state trovate le
+	 * fusioni che coinvolgono lo stesso cluster.
+	 * <p>
+	 * Ogni cluster è identificato dal suo indice minimo e una fusione attende solo l'ultima fusione
+	 * trovata prima di lei su ognuno dei suoi due cluster: ogni gruppo con la stessa altezza viene quindi
+	 * ordinato una sola volta, con un ordinamento topologico che sceglie tra le fusioni pronte quella
+	 * con la distanza minore e poi con gli indici minori, in tempo O(g log g) per un gruppo di g fusioni.
+	 * Le distanze sugli esempi richiedono complessivamente al più O(n²) letture della matrice delle distanze,
+	 * perché ogni coppia di esempi è confrontata in una sola fusione.
+	 * </p>
+	 *
+	 * @param n Numero di esempi.
+	 * @param left Primo cluster di ogni fusione, il minore dei due, riordinato sul posto.
+	 * @param right Secondo cluster di ogni fusione, riordinato sul posto.
+	 * @param height Altezza di ogni fusione, riordinata sul posto.
+	 * @param data Esempi su cui lavorare.
+	 * @param distance Metrica con cui calcolare le distanze sugli esempi.
+	 */
+	private static void sortMerges(int n, int[] left, int[] right, double[] height, Data data, ClusterDistance distance) {
+		int merges = left.length;
+		Integer[] byHeight = new Integer[merges];
+		for (int i = 0; i < merges; i++) {
+			byHeight[i] = i;
+		}
+		// ordinamento stabile: a parità di altezza le fusioni restano nell'ordine in cui sono state trovate
+		Arrays.sort(byHeight, (p, q) -> Double.compare(height[p], height[q]));
+
+		// le fusioni di un gruppo con più fusioni sono confrontate sulla distanza calcolata sugli esempi,
+		// nell'ordine in cui sono state trovate per conoscere gli esempi dei due cluster
+		boolean[] grouped = new boolean[merges];
+		for (int start = 0; start < merges; ) {
+			int end = groupEnd(start, byHeight, height);
+			for (int p = start; p < end && end - start > 1; p++) {
+				grouped[byHeight[p]] = true;
+			}
+			start = end;
+		}
+		double[] mean = new double[merges];
+		ClusterMembers members = new ClusterMembers(n);
+		for (int f = 0; f < merges; f++) {
+			if (grouped[f]) {
+				mean[f] = distance.distance(members.cluster(left[f]), members.cluster(right[f]), data);
+			}
+			members.merge(left[f], right[f]);
+		}
+
+		int[] sortedLeft = new int[merges];
+		int[] sortedRight = new int[merges];
+		double[] sortedHeight = new double[merges];
+
+		// last[c] è l'ultima fusione del gruppo corrente che coinvolge il cluster c, -1 se nessuna
+		int[] last = new int[n];
+		Arrays.fill(last, -1);
+		// next[f] sono le fusioni che attendono f, al più una per ognuno dei suoi due cluster
+		int[] nextLeft = new int[merges];
+		int[] nextRight = new int[merges];
+		int[] waiting = new int[merges];
+		PriorityQueue<Integer> ready = new PriorityQueue<>((p, q) -> mean[p] != mean[q] ? Double.compare(mean[p], mean[q])
+				: left[p] != left[q] ? Integer.compare(left[p], left[q]) : Integer.compare(right[p], right[q]));
+
+		int k = 0;
+		for (int start = 0; start < merges; ) {
+			int end = groupEnd(start, byHeight, height);
+
+			for (int p = start; p < end; p++) {
+				int f = byHeight[p];
+				nextLeft[f] = -1;
+				nextRight[f] = -1;
+				waiting[f] = 0;
+				waiting[f] += follow(f, left[f], last, left, nextLeft, nextRight);
+				waiting[f] += follow(f, right[f], last, left, nextLeft, nextRight);
+				if (waiting[f] == 0) {
+					ready.add(f);
+				}
+			}
+
+			while (!ready.isEmpty()) {
+				int f = ready.poll();
+				sortedLeft[k] = left[f];
+				sortedRight[k] = right[f];
+				sortedHeight[k] = height[f];
+				k++;
+				if (nextLeft[f] >= 0 && --waiting[nextLeft[f]] == 0) {
+					ready.add(nextLeft[f]);
+				}
+				if (nextRight[f] >= 0 && --waiting[nextRight[f]] == 0) {
+					ready.add(nextRight[f]);
+				}
+			}
+
+			for (int p = start; p < end; p++) {
+				int f = byHeight[p];
+				last[left[f]] = -1;
+				last[right[f]] = -1;
+			}
+			start = end;
+		}
+
+		System.arraycopy(sortedLeft, 0, left, 0, k);
+		System.arraycopy(sortedRight, 0, right, 0, k);
+		System.arraycopy(sortedHeight, 0, height, 0, k);
+	}
+
+	/**
+	 * Restituisce la fine del gruppo di fusioni che inizia in {@code start}, in cui ogni altezza differisce
+	 * dalla precedente meno di {@link LanceWilliamsEngine#TIE_TOLERANCE}.
+	 *
+	 * @param start Posizione della prima fusione del gruppo.
+	 * @param byHeight Fusioni in ordine di altezza crescente.
+	 * @param height Altezza di ogni fusione.
+	 * @return Posizione successiva all'ultima fusione del gruppo.
+	 */
+	private static int groupEnd(int start, Integer[] byHeight, double[] height) {
+		int end = start + 1;
+		while (end < byHeight.length && height[byHeight[end]] <= height[byHeight[end - 1]] * (1 + LanceWilliamsEngine.TIE_TOLERANCE)) {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * Registra che una fusione coinvolge un cluster e la fa attendere la fusione trovata prima di lei
+	 * sullo stesso cluster, se esiste.
+	 *
+	 * @param f Fusione da registrare.
+	 * @param cluster Uno dei due cluster della fusione.
+	 * @param last Ultima fusione registrata su ogni cluster, aggiornata sul posto.
+	 * @param left Primo cluster di ogni fusione.
+	 * @param nextLeft Fusione che attende ogni fusione sul suo primo cluster, aggiornata sul posto.
+	 * @param nextRight Fusione che attende ogni fusione sul suo secondo cluster, aggiornata sul posto.
+	 * @return 1 se la fusione deve attendere, 0 altrimenti.
+	 */
+	private static int follow(int f, int cluster, int[] last, int[] left, int[] nextLeft, int[] nextRight) {
+		int previous = last[cluster];
+		last[cluster] = f;
+		if (previous < 0) {
+			return 0;
+		}
+		if (left[previous] == cluster) {
+			nextLeft[previous] = f;
+		} else {
+			nextRight[previous] = f;
+		}
+		return 1;
+	}
+}
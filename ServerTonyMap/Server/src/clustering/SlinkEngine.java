@@ -0,0 +1,288 @@
+package src.clustering;
+
+import src.data.Data;
+import src.data.Example;
+import src.distance.ClusterDistance;
+import src.distance.SingleLinkDistance;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Implementazione di {@link MiningEngine} dedicata alla strategia "Single Link", basata
+ * sull'algoritmo SLINK di Sibson.
+ * <p>
+ * La gerarchia viene costruita nella rappresentazione a puntatori (pi, lambda): per ogni esempio
+ * {@code i} si memorizza l'esempio {@code pi[i]} con cui verrà fuso e l'altezza {@code lambda[i]}
+ * della fusione. L'algoritmo richiede tempo O(n²) e memoria aggiuntiva O(n), calcolando le
+ * distanze tra esempi al momento senza mai costruire una matrice delle distanze.
+ * </p>
+ * <p>
+ * Le fusioni sono poi memorizzate nel dendrogramma in ordine di altezza crescente. Se più fusioni
+ * hanno la stessa altezza, l'ordine in cui {@link ClusterSet#mergeClosestClusters(ClusterDistance, Data)}
+ * le applicherebbe dipende da tutte le coppie di esempi a quella distanza, che la rappresentazione a
+ * puntatori non conserva: queste fusioni sono ricostruite ricalcolando le sole distanze tra gli esempi
+ * dei cluster che vengono fusi a quell'altezza (si veda {@link #mergeTies}), per cui la memoria
+ * aggiuntiva resta O(n) e il tempo complessivo O(n²).
+ * </p>
+ */
+public class SlinkEngine implements MiningEngine {
+
+	/**
+	 * Le distanze tra esempi sono calcolate al momento, per cui la matrice delle distanze condivisa serve
+	 * solo se la metrica non è {@link SingleLinkDistance} e il lavoro viene delegato a {@link LanceWilliamsEngine}.
+	 *
+	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @return {@code true} se la metrica non è {@link SingleLinkDistance}.
+	 */
+	@Override
+	public boolean usesDistanceMatrix(ClusterDistance distance) {
+		return !(distance instanceof SingleLinkDistance);
+	}
+
+	/**
+	 * Costruisce i livelli del dendrogramma con l'algoritmo SLINK. Se la metrica non è
+	 * {@link SingleLinkDistance} il lavoro viene delegato a {@link LanceWilliamsEngine}.
+	 *
+	 * @param data Esempi su cui lavorare.
+	 * @param distance Algoritmo di distanza tra cluster con cui lavorare.
+	 * @param dendrogram Dendrogramma da avvalorare.
+	 * @param token Richiesta di interruzione del clustering.
+	 */
+	public void mine(Data data, ClusterDistance distance, Dendrogram dendrogram, CancellationToken token) {
+		if (!(distance instanceof SingleLinkDistance)) {
+			new LanceWilliamsEngine().mine(data, distance, dendrogram, token);
+			return;
+		}
+
+		int n = data.getNumberOfExample();
+		int[] pi = new int[n];
+		double[] lambda = new double[n];
+		double[] m = new double[n];
+
+		for (int i = 0; i < n; i++) {
+			// le altezze sono definitive solo al termine: un'interruzione non lascia livelli utilizzabili
+			token.throwIfCancelled();
+			pi[i] = i;
+			lambda[i] = Double.POSITIVE_INFINITY;
+			Example ei = data.getExample(i);
+
+			for (int j = 0; j < i; j++) {
+				m[j] = data.getExample(j).distance(ei);
+			}
+
+			for (int j = 0; j < i; j++) {
+				if (lambda[j] >= m[j]) {
+					m[pi[j]] = Math.min(m[pi[j]], lambda[j]);
+					lambda[j] = m[j];
+					pi[j] = i;
+				} else {
+					m[pi[j]] = Math.min(m[pi[j]], m[j]);
+				}
+			}
+
+			for (int j = 0; j < i; j++) {
+				if (lambda[j] >= lambda[pi[j]]) {
+					pi[j] = i;
+				}
+			}
+		}
+
+		int[] order = mergeOrder(lambda, n);
+		int[] first = new int[order.length];
+		int[] second = new int[order.length];
+		double[] height = new double[order.length];
+		Ties ties = new Ties(n);
+		for (int start = 0; start < order.length; ) {
+			token.throwIfCancelled();
+			int end = start + 1;
+			while (end < order.length && lambda[order[end]] == lambda[order[start]]) {
+				end++;
+			}
+			if (end - start == 1) {
+				first[start] = order[start];
+				second[start] = pi[order[start]];
+				height[start] = lambda[order[start]];
+				ties.merge(order[start], pi[order[start]]);
+			} else {
+				mergeTies(data, order, start, end, pi, lambda[order[start]], ties, first, second, height);
+			}
+			start = end;
+		}
+
+		dendrogram.setMerges(n, first, second, height);
+	}
+
+	/**
+	 * Ricostruisce le fusioni della stessa altezza {@code h} nell'ordine in cui le applicherebbe
+	 * {@link ClusterSet#mergeClosestClusters(ClusterDistance, Data)}.
+	 * <p>
+	 * Prima di queste fusioni due cluster hanno distanza {@code h} se contengono due esempi a
+	 * distanza {@code h}, altrimenti hanno distanza maggiore. La ricerca della coppia più vicina
+	 * sceglie quindi sempre, tra i cluster a distanza {@code h} da un altro, quello di indice minimo,
+	 * e lo fonde con il cluster di indice minimo tra quelli a distanza {@code h} da lui; il cluster fuso
+	 * mantiene l'indice minimo, per cui la ricerca prosegue assorbendo un cluster alla volta finché
+	 * ne esistono a distanza {@code h}, come una visita in ampiezza che sceglie sempre l'indice minimo.
+	 * Le fusioni della rappresentazione a puntatori indicano quali cluster vengono uniti, per cui si
+	 * confrontano solo gli esempi di cluster che finiscono nello stesso cluster: ogni coppia di esempi
+	 * viene confrontata al più una volta in tutto il clustering.
+	 * </p>
+	 *
+	 * @param data Esempi su cui lavorare.
+	 * @param order Esempi ordinati per altezza di fusione crescente.
+	 * @param start Posizione in {@code order} della prima fusione di altezza {@code h}.
+	 * @param end Posizione in {@code order} successiva all'ultima fusione di altezza {@code h}.
+	 * @param pi Esempio con cui viene fuso ogni esempio nella rappresentazione a puntatori.
+	 * @param h Altezza delle fusioni.
+	 * @param ties Cluster costruiti dalle fusioni precedenti, aggiornati sul posto.
+	 * @param first Primo cluster di ogni fusione, avvalorato dalla posizione {@code start}.
+	 * @param second Secondo cluster di ogni fusione, avvalorato dalla posizione {@code start}.
+	 * @param height Altezza di ogni fusione, avvalorata dalla posizione {@code start}.
+	 */
+	private static void mergeTies(Data data, int[] order, int start, int end, int[] pi, double h, Ties ties,
+			int[] first, int[] second, double[] height) {
+		// cluster coinvolti, identificati dall'indice minimo prima delle fusioni di altezza h
+		int[] involved = new int[2 * (end - start)];
+		int count = 0;
+		for (int k = start; k < end; k++) {
+			involved[count++] = ties.clusters.min(order[k]);
+			involved[count++] = ties.clusters.min(pi[order[k]]);
+		}
+		Arrays.sort(involved, 0, count);
+		for (int k = start; k < end; k++) {
+			ties.clusters.union(order[k], pi[order[k]]);
+		}
+
+		// si raggruppano i cluster che al termine delle fusioni formeranno lo stesso cluster
+		for (int k = count - 1; k >= 0; k--) {
+			int c = involved[k];
+			if (k == 0 || involved[k - 1] != c) {
+				int root = ties.clusters.find(c);
+				ties.nextInGroup[c] = ties.group[root];
+				ties.group[root] = c;
+			}
+		}
+
+		int m = start;
+		PriorityQueue<Integer> adjacent = new PriorityQueue<>();
+		for (int k = 0; k < count; k++) {
+			int c = involved[k];
+			if ((k > 0 && involved[k - 1] == c) || ties.visited[c]) {
+				continue;
+			}
+			// c è l'indice minimo del proprio gruppo: il cluster fuso assorbe un cluster alla volta
+			int root = ties.clusters.find(c);
+			ties.visited[c] = true;
+			int absorbed = c;
+			while (true) {
+				int[] members = ties.members.members(absorbed);
+				for (int other = ties.group[root]; other >= 0; other = ties.nextInGroup[other]) {
+					if (!ties.visited[other] && adjacent(data, members, ties.members.members(other), h)) {
+						ties.visited[other] = true;
+						adjacent.add(other);
+					}
+				}
+				if (adjacent.isEmpty()) {
+					break;
+				}
+				absorbed = adjacent.poll();
+				first[m] = c;
+				second[m] = absorbed;
+				height[m] = h;
+				m++;
+			}
+		}
+
+		for (int k = start; k < m; k++) {
+			ties.members.merge(first[k], second[k]);
+		}
+		for (int k = 0; k < count; k++) {
+			int c = involved[k];
+			ties.visited[c] = false;
+			ties.group[ties.clusters.find(c)] = -1;
+		}
+	}
+
+	/**
+	 * Indica se due cluster contengono due esempi a una data distanza, calcolata come nella matrice
+	 * delle distanze.
+	 *
+	 * @param data Esempi su cui lavorare.
+	 * @param a Esempi del primo cluster.
+	 * @param b Esempi del secondo cluster.
+	 * @param h Distanza cercata.
+	 * @return {@code true} se esiste una coppia di esempi a distanza {@code h}.
+	 */
+	private static boolean adjacent(Data data, int[] a, int[] b, double h) {
+		for (int i : a) {
+			Example ei = data.getExample(i);
+			for (int j : b) {
+				double d = i < j ? ei.distance(data.getExample(j)) : data.getExample(j).distance(ei);
+				if (d == h) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Restituisce gli indici degli esempi ordinati per altezza di fusione crescente. L'ultimo
+	 * esempio, che non viene mai fuso, è escluso.
+	 *
+	 * @param lambda Altezze di fusione della rappresentazione a puntatori.
+	 * @param n Numero di esempi.
+	 * @return Ordine in cui applicare le {@code n - 1} fusioni.
+	 */
+	private static int[] mergeOrder(double[] lambda, int n) {
+		Integer[] order = new Integer[Math.max(n - 1, 0)];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (x, y) -> Double.compare(lambda[x], lambda[y]));
+		return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Stato utilizzato per ricostruire le fusioni della stessa altezza, di dimensione O(n).
+	 */
+	private static final class Ties {
+
+		/** Cluster costruiti dalle fusioni applicate finora */
+		final UnionFind clusters;
+
+		/** Esempi dei cluster costruiti dalle fusioni applicate finora */
+		final ClusterMembers members;
+
+		/** Primo cluster di ogni gruppo, indicizzato sulla radice del gruppo, -1 se vuoto */
+		final int[] group;
+
+		/** Cluster successivo nello stesso gruppo, -1 per l'ultimo */
+		final int[] nextInGroup;
+
+		/** Cluster già assorbiti, o in attesa di esserlo */
+		final boolean[] visited;
+
+		Ties(int n) {
+			clusters = new UnionFind(n);
+			members = new ClusterMembers(n);
+			group = new int[n];
+			nextInGroup = new int[n];
+			visited = new boolean[n];
+			Arrays.fill(group, -1);
+		}
+
+		/**
+		 * Applica una fusione che non ha pareggi.
+		 *
+		 * @param i Un esempio del primo cluster.
+		 * @param j Un esempio del secondo cluster.
+		 */
+		void merge(int i, int j) {
+			int a = clusters.min(i);
+			int b = clusters.min(j);
+			clusters.union(a, b);
+			members.merge(Math.min(a, b), Math.max(a, b));
+		}
+	}
+}
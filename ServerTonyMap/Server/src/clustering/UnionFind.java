@@ -0,0 +1,94 @@
+package src.clustering;
+
+/**
+ * Struttura union-find sugli indici degli esempi di un dataset.
+ * <p>
+ * Ogni insieme ricorda il minimo indice che contiene, che coincide con l'identificativo
+ * utilizzato per ordinare i cluster all'interno di un {@link ClusterSet}.
+ * </p>
+ */
+class UnionFind {
+
+	/** Padre di ogni elemento, le radici sono padri di sé stesse */
+	private final int[] parent;
+
+	/** Numero di elementi degli insiemi, significativo solo per le radici */
+	private final int[] size;
+
+	/** Minimo indice degli insiemi, significativo solo per le radici */
+	private final int[] min;
+
+	/**
+	 * Crea {@code n} insiemi, ognuno contenente un solo indice.
+	 *
+	 * @param n Numero di elementi.
+	 */
+	UnionFind(int n) {
+		parent = new int[n];
+		size = new int[n];
+		min = new int[n];
+		for (int i = 0; i < n; i++) {
+			parent[i] = i;
+			size[i] = 1;
+			min[i] = i;
+		}
+	}
+
+	/**
+	 * Restituisce la radice dell'insieme che contiene {@code x}.
+	 *
+	 * @param x Elemento da cercare.
+	 * @return Radice dell'insieme di {@code x}.
+	 */
+	int find(int x) {
+		while (parent[x] != x) {
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		return x;
+	}
+
+	/**
+	 * Unisce gli insiemi che contengono {@code x} e {@code y}.
+	 *
+	 * @param x Elemento del primo insieme.
+	 * @param y Elemento del secondo insieme.
+	 * @return Radice dell'insieme risultante.
+	 */
+	int union(int x, int y) {
+		int rx = find(x);
+		int ry = find(y);
+		if (rx == ry) {
+			return rx;
+		}
+		if (size[rx] < size[ry]) {
+			int tmp = rx;
+			rx = ry;
+			ry = tmp;
+		}
+		parent[ry] = rx;
+		size[rx] += size[ry];
+		min[rx] = Math.min(min[rx], min[ry]);
+		return rx;
+	}
+
+	/**
+	 * Restituisce il minimo indice dell'insieme che contiene {@code x}.
+	 *
+	 * @param x Elemento dell'insieme.
+	 * @return Minimo indice dell'insieme.
+	 */
+	int min(int x) {
+		return min[find(x)];
+	}
+
+	/**
+	 * Restituisce il numero di elementi dell'insieme che contiene {@code x}.
+	 *
+	 * @param x Elemento dell'insieme.
+	 * @return Numero di elementi dell'insieme.
+	 */
+	int size(int x) {
+		return size[find(x)];
+	}
+}
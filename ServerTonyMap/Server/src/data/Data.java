@@ -1,17 +1,26 @@
 package src.data;
 
 import src.Keyboard;
+import src.clustering.CancellationToken;
 import src.database.DbAccess;
 import src.database.TableData;
 import src.exceptions.EmptySetException;
+import src.exceptions.MiningCancelledException;
 import src.exceptions.MissingNumberException;
 import src.exceptions.NoDataException;
+import src.metrics.Phase;
+import src.metrics.ServerMetrics;
 
 import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 //**********************************************************************************
 // Interfacce implementate:
@@ -24,6 +33,23 @@ public class Data implements Iterable<Example>, Serializable{
     /** Dataset */
     private List<Example> data = new ArrayList<>();
 
+    /** Numero di righe della tabella uguali a ogni esempio, null se ogni esempio ha peso 1 */
+    private int[] weights;
+
+    /** Matrice delle distanze tra gli esempi, calcolata alla prima richiesta */
+    private transient volatile DistanceMatrix distanceMatrix;
+
+    /** Calcolo della matrice delle distanze in corso, eseguito da chi l'ha richiesta per primo */
+    private transient volatile FutureTask<DistanceMatrix> computation;
+
+    /** Aggiornamento atomico di {@link #computation}, che dopo la deserializzazione è null come ogni campo transient */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Data, FutureTask> COMPUTATION =
+            AtomicReferenceFieldUpdater.newUpdater(Data.class, FutureTask.class, "computation");
+
+    /** Intervallo, in millisecondi, con cui chi attende il calcolo della matrice controlla se deve interrompersi */
+    static final long WAIT_MILLIS = 50;
+
     /**
      * Costruttore parametrizzato di un oggetto Data con Esempi letti dal Database
      * @param tableName Nome della tabella da interrogare da cui leggere gli esempi
@@ -33,7 +59,13 @@ public class Data implements Iterable<Example>, Serializable{
         DbAccess db = new DbAccess();
         TableData tb = new TableData(db);
         try {
-            data = tb.getDistinctTransazioni(tableName);
+            if (TableData.WEIGHTED_LOAD) {
+                TableData.WeightedRows rows = tb.getWeightedTransazioni(tableName);
+                data = rows.getExamples();
+                weights = rows.getWeights();
+            } else {
+                data = tb.getDistinctTransazioni(tableName);
+            }
 
         } catch (SQLException e) {
 
@@ -50,6 +82,15 @@ public class Data implements Iterable<Example>, Serializable{
         }
     }
 
+    /**
+     * Costruttore di un oggetto Data con Esempi già disponibili, ad esempio generati per i benchmark,
+     * ognuno con peso 1
+     * @param examples esempi del dataset, tutti della stessa dimensione; la lista viene copiata
+     */
+    public Data(List<Example> examples) {
+        data = new ArrayList<>(examples);
+    }
+
     /**
      * Implementazione del metodo virtuale iterator presente nell'interfaccia Iterable
      * @return Iteratore per la Collection di tipo ArrayList data
@@ -66,6 +107,16 @@ public class Data implements Iterable<Example>, Serializable{
         return data.size();
     }
 
+    /**
+     * Restituisce il peso di un esempio, cioè il numero di righe della tabella uguali ad esso.
+     * Se la tabella è stata letta con {@code SELECT DISTINCT} ogni esempio ha peso 1.
+     * @param exampleIndex indice di un esempio memorizzato in data
+     * @return peso dell'esempio
+     */
+    public int getWeight(int exampleIndex) {
+        return weights == null ? 1 : weights[exampleIndex];
+    }
+
     /**
      * Restituisce l'esempio nel dataset in posizione passata come parametro
      * @param exampleIndex indice di un esempio memorizzato in data
@@ -76,18 +127,115 @@ public class Data implements Iterable<Example>, Serializable{
     }
 
     /**
-     * Restituisce la matrice triangolare superiore delle distanze
+     * Restituisce la matrice triangolare superiore delle distanze.
+     * La matrice viene calcolata una sola volta usando il metodo distance di Example, suddividendo
+     * il lavoro tra più thread, e riutilizzata dalle chiamate successive.
+     * @return matrice triangolare superiore delle distanze Euclidee calcolate tra gli esempi memorizzati in data.
+     */
+    public DistanceMatrix distance() {
+        DistanceMatrix matrix = distanceMatrix;
+        return matrix != null ? matrix : distance(new CancellationToken());
+    }
+
+    /**
+     * Restituisce la matrice triangolare superiore delle distanze, come {@link #distance()}, interrompendone
+     * il calcolo se richiesto; una matrice non completata non viene memorizzata.
+     * <p>
+     * La matrice viene calcolata da chi la richiede per primo. Chi la richiede durante il calcolo ne attende
+     * il termine senza bloccare un monitor, controllando ogni {@link #WAIT_MILLIS} millisecondi il proprio
+     * token; se il calcolo viene interrotto da chi lo sta eseguendo, il primo dei client in attesa lo ripete.
+     * </p>
+     * @param token richiesta di interruzione del calcolo
      * @return matrice triangolare superiore delle distanze Euclidee calcolate tra gli esempi memorizzati in data.
-     * Tale matrice va avvalorata usando il metodo distance di Example
+     * @throws MiningCancelledException se il calcolo viene interrotto
      */
-    public double[][] distance () {
-        double [][] distanceMatrix = new double[getNumberOfExample()][getNumberOfExample()];
-        for(int i = 0; i < getNumberOfExample(); i++) {
-            for(int j = i; j < getNumberOfExample(); j++) {
-                distanceMatrix[i][j] = this.getExample(i).distance(getExample(j));
+    public DistanceMatrix distance(CancellationToken token) {
+        while (true) {
+            DistanceMatrix matrix = distanceMatrix;
+            if (matrix != null) {
+                return matrix;
             }
+
+            FutureTask<DistanceMatrix> task = computation;
+            if (task == null) {
+                FutureTask<DistanceMatrix> created = new FutureTask<>(() -> {
+                    long start = System.nanoTime();
+                    DistanceMatrix computed = DistanceKernel.compute(data, token);
+                    ServerMetrics.shared().record(Phase.DISTANCE, start);
+                    distanceMatrix = computed;
+                    return computed;
+                });
+                if (!COMPUTATION.compareAndSet(this, null, created)) {
+                    // un altro thread ha pubblicato il proprio calcolo, che potrebbe essere già fallito ed eliminato
+                    continue;
+                }
+                created.run();
+                task = created;
+            }
+
+            try {
+                return await(task, token);
+            } catch (ExecutionException e) {
+                // il calcolo è fallito: viene eliminato, in modo che possa essere ripetuto
+                COMPUTATION.compareAndSet(this, task, null);
+                Throwable cause = e.getCause();
+                if (!(cause instanceof MiningCancelledException) || token.isCancelled()) {
+                    throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restituisce una matrice delle distanze ad uso esclusivo del chiamante, che può modificarla sul posto.
+     * <p>
+     * La matrice è una copia di quella condivisa ({@link #distance(CancellationToken)}), calcolata e
+     * memorizzata se necessario: i clustering successivi sullo stesso dataset, che {@link src.cache.DataCache}
+     * conserva tra una richiesta e l'altra, ne ottengono una copia senza ricalcolare le distanze.
+     * </p>
+     * @param token richiesta di interruzione del calcolo
+     * @return nuova matrice delle distanze Euclidee tra gli esempi memorizzati in data
+     * @throws MiningCancelledException se il calcolo viene interrotto
+     */
+    public DistanceMatrix newDistance(CancellationToken token) {
+        return distance(token).copy();
+    }
+
+    /**
+     * Attende il termine del calcolo della matrice, controllando periodicamente se va interrotto.
+     * @param task calcolo della matrice
+     * @param token richiesta di interruzione di chi attende
+     * @return matrice calcolata
+     * @throws ExecutionException se il calcolo è fallito
+     * @throws MiningCancelledException se chi attende va interrotto
+     */
+    private static DistanceMatrix await(FutureTask<DistanceMatrix> task, CancellationToken token) throws ExecutionException {
+        while (true) {
+            try {
+                return task.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                token.throwIfCancelled();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MiningCancelledException(token.getReason());
+            }
+        }
+    }
+
+    /**
+     * Restituisce una stima della memoria occupata dagli esempi e, se già calcolata, dalla matrice delle distanze.
+     * @return numero approssimato di byte occupati
+     */
+    public long getMemoryFootprint() {
+        DistanceMatrix matrix = distanceMatrix;
+        long bytes = 16L + 8L * data.size() + (weights == null ? 0L : 16L + 4L * weights.length);
+        for (Example e : data) {
+            bytes += 32L + 8L * e.size();
+        }
+        if (matrix != null) {
+            bytes += matrix.getMemoryFootprint();
         }
-        return distanceMatrix;
+        return bytes;
     }
 
     /**
@@ -140,11 +288,11 @@ public class Data implements Iterable<Example>, Serializable{
 	
 		} while (!loadedData);
 		System.out.println(trainingSet);
-		double [][] distancematrix=trainingSet.distance();
+		DistanceMatrix distancematrix=trainingSet.distance();
 		System.out.println("Distance matrix:\n");
-		for(int i=0;i<distancematrix.length;i++) {
-			for(int j=0;j<distancematrix.length;j++)
-				System.out.print(distancematrix[i][j]+"\t");
+		for(int i=0;i<distancematrix.size();i++) {
+			for(int j=0;j<distancematrix.size();j++)
+				System.out.print((j >= i ? distancematrix.get(i, j) : 0.0)+"\t");
 			System.out.println("");
 		}
 	}
@@ -0,0 +1,134 @@
+package src.data;
+
+import src.clustering.CancellationToken;
+import src.exceptions.MiningCancelledException;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Calcolo parallelo della matrice delle distanze tra gli esempi di un dataset.
+ * <p>
+ * Il triangolo superiore della matrice viene suddiviso in blocchi quadrati di {@link #TILE} righe
+ * per {@link #TILE} colonne, abbastanza piccoli da mantenere in cache gli esempi coinvolti; i blocchi
+ * sono poi distribuiti tra i thread di un {@link ForkJoinPool} dedicato.
+ * </p>
+ * <p>
+ * Il numero di thread utilizzati si imposta con la proprietà di sistema
+ * {@code tonymap.distance.parallelism} (di default il numero di processori disponibili).
+ * </p>
+ */
+class DistanceKernel {
+
+    /** Numero di righe e di colonne di un blocco */
+    static final int TILE = 64;
+
+    /** Numero di thread dedicati al calcolo delle distanze */
+    static final int PARALLELISM = Math.max(1, Integer.getInteger("tonymap.distance.parallelism",
+            Runtime.getRuntime().availableProcessors()));
+
+    /** Pool condiviso da tutti i calcoli, creato al primo utilizzo */
+    private static ForkJoinPool pool;
+
+    /**
+     * Calcola la matrice delle distanze tra gli esempi, controllando prima di ogni blocco se il
+     * calcolo va interrotto
+     * @param examples esempi del dataset
+     * @param token richiesta di interruzione del calcolo
+     * @return matrice triangolare superiore delle distanze
+     * @throws MiningCancelledException se il calcolo viene interrotto
+     */
+    static DistanceMatrix compute(List<Example> examples, CancellationToken token) {
+        int n = examples.size();
+        Example[] rows = examples.toArray(new Example[0]);
+        DistanceMatrix matrix = DistanceMatrix.allocate(n);
+
+        int blocks = (n + TILE - 1) / TILE;
+        if (blocks <= 1 || PARALLELISM == 1) {
+            for (int bi = 0; bi < blocks; bi++) {
+                for (int bj = bi; bj < blocks; bj++) {
+                    token.throwIfCancelled();
+                    computeTile(rows, matrix, bi, bj);
+                }
+            }
+        } else {
+            getPool().invoke(new TileTask(rows, matrix, token, blocks, 0, blocks * (blocks + 1) / 2));
+        }
+        return matrix;
+    }
+
+    /**
+     * Restituisce il pool di thread, creandolo se necessario
+     * @return pool dedicato al calcolo delle distanze
+     */
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(PARALLELISM);
+        }
+        return pool;
+    }
+
+    /**
+     * Calcola le distanze del blocco di righe {@code bi} e colonne {@code bj}, con {@code bi <= bj}
+     * @param rows esempi del dataset
+     * @param matrix matrice da avvalorare
+     * @param bi indice del blocco di righe
+     * @param bj indice del blocco di colonne
+     */
+    private static void computeTile(Example[] rows, DistanceMatrix matrix, int bi, int bj) {
+        int n = rows.length;
+        int rowEnd = Math.min((bi + 1) * TILE, n);
+        int colEnd = Math.min((bj + 1) * TILE, n);
+        for (int i = bi * TILE; i < rowEnd; i++) {
+            Example e = rows[i];
+            for (int j = Math.max(bj * TILE, i + 1); j < colEnd; j++) {
+                matrix.set(i, j, e.distance(rows[j]));
+            }
+        }
+    }
+
+    /**
+     * Compito che calcola un intervallo di blocchi, numerati per righe sul triangolo superiore,
+     * dividendolo a metà finché non resta un solo blocco.
+     */
+    private static class TileTask extends RecursiveAction {
+        /** RecursiveAction è serializzabile, ma i compiti non vengono mai serializzati */
+        private static final long serialVersionUID = 1L;
+
+        private final Example[] rows;
+        private final transient DistanceMatrix matrix;
+        private final transient CancellationToken token;
+        private final int blocks;
+        private final int from;
+        private final int to;
+
+        TileTask(Example[] rows, DistanceMatrix matrix, CancellationToken token, int blocks, int from, int to) {
+            this.rows = rows;
+            this.matrix = matrix;
+            this.token = token;
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileTask(rows, matrix, token, blocks, from, mid),
+                        new TileTask(rows, matrix, token, blocks, mid, to));
+                return;
+            }
+            token.throwIfCancelled();
+            // conversione dal numero del blocco alla coppia (bi, bj)
+            int bi = 0;
+            int remaining = from;
+            while (remaining >= blocks - bi) {
+                remaining -= blocks - bi;
+                bi++;
+            }
+            computeTile(rows, matrix, bi, bi + remaining);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package src.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Matrice triangolare superiore delle distanze tra gli esempi di un dataset.
+ * <p>
+ * Le sole coppie {@code (i, j)} con {@code i < j} sono memorizzate per righe, occupando circa la
+ * metà della memoria di una matrice {@code double[n][n]}.
+ * La distanza di un esempio da sé stesso è sempre 0 e la matrice è simmetrica, per cui
+ * {@link #get(int, int)} accetta gli indici in qualsiasi ordine.
+ * </p>
+ * <p>
+ * Finché la matrice occupa meno della soglia indicata dalla proprietà di sistema
+ * {@code tonymap.distance.mappedThreshold} (in byte, di default un quarto della memoria massima
+ * della JVM) i valori sono conservati in un array nello heap. Oltre la soglia sono scritti in un
+ * file temporaneo mappato in memoria, nella cartella indicata da {@code tonymap.distance.tmpdir}
+ * (di default quella temporanea del sistema): la matrice resta così fuori dallo heap e il
+ * caricamento delle pagine è affidato al sistema operativo. Il file viene eliminato alla chiusura
+ * del canale, mentre la mappatura resta valida finché la matrice è raggiungibile.
+ * </p>
+ */
+public class DistanceMatrix {
+
+    /** Dimensione in byte oltre la quale la matrice viene mappata su file */
+    static final long MAPPED_THRESHOLD = Long.getLong("tonymap.distance.mappedThreshold",
+            Runtime.getRuntime().maxMemory() / 4);
+
+    /** Logaritmo in base 2 del numero di valori di ogni segmento mappato */
+    private static final int SEGMENT_BITS = 27;
+
+    /** Numero di valori di ogni segmento mappato (1 GB) */
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    /** Maschera per ricavare la posizione di un valore all'interno del suo segmento */
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /** Numero di esempi su cui è definita la matrice */
+    private final int n;
+
+    /** Distanze memorizzate per righe nello heap, null se la matrice è mappata su file */
+    private final double[] values;
+
+    /** Segmenti del file su cui è mappata la matrice, null se la matrice è nello heap */
+    private final DoubleBuffer[] segments;
+
+    /**
+     * Crea una matrice di distanze con tutti i valori pari a 0, nello heap o su file a seconda
+     * della sua dimensione.
+     * @param n numero di esempi su cui è definita la matrice
+     * @return nuova matrice delle distanze
+     */
+    public static DistanceMatrix allocate(int n) {
+        long count = (long) n * (n - 1) / 2;
+        if (count * Double.BYTES > MAPPED_THRESHOLD || count > Integer.MAX_VALUE - 8) {
+            return new DistanceMatrix(n, null, map(count));
+        }
+        return new DistanceMatrix(n, new double[(int) count], null);
+    }
+
+    /**
+     * Crea una matrice sullo spazio di memorizzazione indicato
+     * @param n numero di esempi su cui è definita la matrice
+     * @param values array dei valori, null se la matrice è mappata su file
+     * @param segments segmenti mappati, null se la matrice è nello heap
+     */
+    private DistanceMatrix(int n, double[] values, DoubleBuffer[] segments) {
+        this.n = n;
+        this.values = values;
+        this.segments = segments;
+    }
+
+    /**
+     * Crea un file temporaneo della dimensione necessaria e lo mappa in memoria a segmenti
+     * @param count numero di valori da memorizzare
+     * @return segmenti mappati, inizializzati a 0
+     */
+    private static DoubleBuffer[] map(long count) {
+        Path dir = Paths.get(System.getProperty("tonymap.distance.tmpdir", System.getProperty("java.io.tmpdir")));
+        DoubleBuffer[] segments = new DoubleBuffer[(int) ((count + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+        try {
+            Path file = Files.createTempFile(dir, "tonymap", ".dist");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+                for (int s = 0; s < segments.length; s++) {
+                    long first = (long) s << SEGMENT_BITS;
+                    long length = Math.min(SEGMENT_SIZE, count - first);
+                    segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, first * Double.BYTES, length * Double.BYTES)
+                            .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile creare il file temporaneo delle distanze", e);
+        }
+        return segments;
+    }
+
+    /**
+     * Restituisce il numero di esempi su cui è definita la matrice
+     * @return numero di righe (e di colonne) della matrice
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Indica se la matrice è mappata su file anziché conservata nello heap
+     * @return {@code true} se la matrice è mappata su file
+     */
+    public boolean isMapped() {
+        return segments != null;
+    }
+
+    /**
+     * Restituisce la memoria dello heap occupata dalla matrice; una matrice mappata su file non occupa heap
+     * @return numero approssimato di byte occupati nello heap
+     */
+    public long getMemoryFootprint() {
+        return values != null ? 16L + 8L * values.length : 64L + 64L * segments.length;
+    }
+
+    /**
+     * Restituisce la distanza tra due esempi
+     * @param i indice del primo esempio
+     * @param j indice del secondo esempio
+     * @return distanza tra gli esempi {@code i} e {@code j}
+     */
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0.0;
+        }
+        return read(i < j ? index(i, j) : index(j, i));
+    }
+
+    /**
+     * Copia in {@code dest} le distanze dell'esempio {@code i} dagli esempi di indice compreso tra
+     * {@code from} (incluso) e {@code to} (escluso), con {@code i < from}. I valori sono contigui
+     * nella memorizzazione, per cui la lettura avviene a blocchi.
+     * @param i indice della riga
+     * @param from primo indice di colonna, maggiore di {@code i}
+     * @param to indice di colonna successivo all'ultimo
+     * @param dest array in cui copiare i valori a partire dalla posizione 0
+     */
+    public void getRow(int i, int from, int to, double[] dest) {
+        long start = index(i, from);
+        int length = to - from;
+        if (values != null) {
+            System.arraycopy(values, (int) start, dest, 0, length);
+            return;
+        }
+        int copied = 0;
+        while (copied < length) {
+            long position = start + copied;
+            DoubleBuffer segment = segments[(int) (position >>> SEGMENT_BITS)];
+            int offset = (int) (position & SEGMENT_MASK);
+            int chunk = Math.min(length - copied, segment.capacity() - offset);
+            segment.get(offset, dest, copied, chunk);
+            copied += chunk;
+        }
+    }
+
+    /**
+     * Modifica la distanza tra due esempi distinti
+     * @param i indice del primo esempio
+     * @param j indice del secondo esempio, diverso da {@code i}
+     * @param value nuova distanza
+     */
+    public void set(int i, int j, double value) {
+        long index = i < j ? index(i, j) : index(j, i);
+        if (values != null) {
+            values[(int) index] = value;
+        } else {
+            segments[(int) (index >>> SEGMENT_BITS)].put((int) (index & SEGMENT_MASK), value);
+        }
+    }
+
+    /**
+     * Restituisce una copia indipendente della matrice, utile a chi deve aggiornarne i valori
+     * senza alterare quelli condivisi dal dataset. Una matrice mappata viene copiata su un nuovo
+     * file temporaneo.
+     * @return copia della matrice
+     */
+    public DistanceMatrix copy() {
+        if (values != null) {
+            return new DistanceMatrix(n, values.clone(), null);
+        }
+        DoubleBuffer[] copy = map((long) n * (n - 1) / 2);
+        for (int s = 0; s < segments.length; s++) {
+            copy[s].put(0, segments[s], 0, segments[s].capacity());
+        }
+        return new DistanceMatrix(n, null, copy);
+    }
+
+    /**
+     * Legge il valore nella posizione indicata
+     * @param index posizione del valore
+     * @return valore memorizzato
+     */
+    private double read(long index) {
+        if (values != null) {
+            return values[(int) index];
+        }
+        return segments[(int) (index >>> SEGMENT_BITS)].get((int) (index & SEGMENT_MASK));
+    }
+
+    /**
+     * Restituisce la posizione della coppia {@code (i, j)} con {@code i < j}
+     * @param i indice di riga
+     * @param j indice di colonna
+     * @return posizione della coppia nella memorizzazione per righe
+     */
+    private long index(int i, int j) {
+        return (long) i * (2L * n - i - 1) / 2 + (j - i - 1);
+    }
+}
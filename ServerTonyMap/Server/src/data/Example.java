@@ -4,52 +4,65 @@ import src.exceptions.InvalidSizeException;
 
 import java.io.Serializable;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 //**********************************************************************************
 // Interfacce implementate:
-// Iterable: Per poter utilizzare L'iteratore sulla collection di tipo List example
+// Iterable: Per poter scorrere i valori dell'esempio
 // Serializable: Per poter serializzare e quindi salvare su file la classe
 //
 //**********************************************************************************
 public class Example implements Iterable<Double>, Serializable {
     
     /**
-     * Collection di valori reali
+     * Valori reali dell'esempio, memorizzati in un array di tipo primitivo
      */
-    private List<Double> example;
+    private final double[] example;
 
     /**
-     * Inizializza example una Collection di tipo {@code LinkedList}
+     * Crea un esempio che utilizza direttamente l'array passato come parametro, senza copiarlo
+     * @param values valori reali dell'esempio
      */
-    public Example() {
-        example = new LinkedList<>(); 
+    public Example(double[] values) {
+        example = values;
     }
 
     /**
      * Implementazione del metodo virtuale iterator presente nell'interfaccia Iterable
-     * @return Iteratore per la Collection di tipo LinkedList example
+     * @return Iteratore sui valori dell'esempio
      */
     public Iterator<Double> iterator(){
-        return example.iterator();
+        return new Iterator<Double>() {
+            private int index = 0;
+
+            public boolean hasNext() {
+                return index < example.length;
+            }
+
+            public Double next() {
+                if (index >= example.length) {
+                    throw new NoSuchElementException();
+                }
+                return example[index++];
+            }
+        };
     }
 
     /**
-     * Aggiunge alla collection di tipo List {@code example} il valore passatogli come parametro
-     * @param v Valore reale da inserire nella Collection
+     * Restituisce il numero di valori dell'esempio
+     * @return dimensione dell'esempio
      */
-    public void add(Double v) {
-        example.add(v);
+    public int size() {
+        return example.length;
     }
 
     /**
-     * Restituisce il valore reale presente nella collection in posizione del parametro passato.
-     * @param index Posizione del valore reale all'interno della collection
-     * @return Valore reale estrapolato dalla collection
+     * Restituisce il valore reale presente nella posizione del parametro passato.
+     * @param index Posizione del valore reale all'interno dell'esempio
+     * @return Valore reale estrapolato dall'esempio
      */
-    public Double get(int index) {
-        return example.get(index);
+    public double get(int index) {
+        return example[index];
     }
 
     /**
@@ -57,24 +70,14 @@ public class Example implements Iterable<Double>, Serializable {
      * @param newE instanza di example
      * @return restituisce il valore calcolato
      */
-    public Double distance(Example newE) {
+    public double distance(Example newE) {
 
-        Double eucDis = 0.0;
+        int length = this.example.length;
 
         try {
             
-            if(this.example.size() != newE.example.size()) {
-                throw new InvalidSizeException("Dimensioni degli esempi differenti: "+this.example.size()+"!="+newE.example.size());
-            }
-    
-            Iterator<Double> i1 = this.iterator();
-            Iterator<Double> i2 = newE.iterator();
-
-            while(i1.hasNext()) {
-                Double val1 = i1.next();
-                Double val2 = i2.next();
-                Double diff = val1 - val2;
-                eucDis = eucDis + (diff * diff);
+            if(this.example.length != newE.example.length) {
+                throw new InvalidSizeException("Dimensioni degli esempi differenti: "+this.example.length+"!="+newE.example.length);
             }
 
         } catch (InvalidSizeException e) {
@@ -82,27 +85,11 @@ public class Example implements Iterable<Double>, Serializable {
             System.out.println(e.getMessage());
             System.out.println("La distanza verrà calcolata in base all'esempio di dimensione minore.");
 
-            Iterator<Double> min;
-            Iterator<Double> other;
+            length = Math.min(this.example.length, newE.example.length);
 
-            if(this.example.size() < newE.example.size()) {
-                min = this.iterator();
-                other = newE.iterator();
-            } else {
-                min = newE.iterator();
-                other = this.iterator();
-            }
-
-            while(min.hasNext()) {
-                Double val1 = min.next();
-                Double val2 = other.next();
-                Double diff = val1 - val2;
-                eucDis = eucDis + (diff * diff);
-            }
-            
         }
-        
-        return eucDis;
+
+        return SquaredDistance.INSTANCE.compute(this.example, newE.example, length);
 
     }
     
@@ -112,9 +99,9 @@ public class Example implements Iterable<Double>, Serializable {
      */
     public String toString() {
         StringBuilder str = new StringBuilder ("[");
-        for (Double val : example) {
-            str.append(val);
-            if(val != example.getLast()) {
+        for (int i = 0; i < example.length; i++) {
+            str.append(example[i]);
+            if(i < example.length - 1) {
                 str.append(",");
             }
         }
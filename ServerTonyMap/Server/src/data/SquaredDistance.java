@@ -0,0 +1,58 @@
+package src.data;
+
+/**
+ * Calcolo del quadrato della distanza euclidea tra due vettori di valori reali.
+ * <p>
+ * L'implementazione usata da {@link Example#distance(Example)} viene scelta una sola volta:
+ * se il modulo {@code jdk.incubator.vector} è disponibile (la JVM è avviata con
+ * {@code --add-modules jdk.incubator.vector}) si utilizza {@link VectorSquaredDistance},
+ * altrimenti il ciclo scalare {@link #SCALAR}. La proprietà di sistema
+ * {@code tonymap.distance.vector=false} forza l'implementazione scalare.
+ * </p>
+ */
+interface SquaredDistance {
+
+    /**
+     * Implementazione scalare, sempre disponibile
+     */
+    SquaredDistance SCALAR = (a, b, length) -> {
+        double eucDis = 0.0;
+        for (int i = 0; i < length; i++) {
+            double diff = a[i] - b[i];
+            eucDis += diff * diff;
+        }
+        return eucDis;
+    };
+
+    /**
+     * Implementazione scelta all'avvio
+     */
+    SquaredDistance INSTANCE = select();
+
+    /**
+     * Calcola la somma dei quadrati delle differenze tra i primi {@code length} valori dei due vettori
+     * @param a primo vettore
+     * @param b secondo vettore
+     * @param length numero di valori da considerare
+     * @return quadrato della distanza euclidea
+     */
+    double compute(double[] a, double[] b, int length);
+
+    /**
+     * Sceglie l'implementazione più veloce disponibile sulla JVM corrente
+     * @return implementazione vettoriale se disponibile, altrimenti quella scalare
+     */
+    private static SquaredDistance select() {
+        if (Boolean.parseBoolean(System.getProperty("tonymap.distance.vector", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // caricata per nome per non collegare questa classe al modulo incubator
+                return (SquaredDistance) Class.forName("src.data.VectorSquaredDistance")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.out.println("Calcolo vettoriale delle distanze non disponibile: " + e.getMessage());
+            }
+        }
+        return SCALAR;
+    }
+}
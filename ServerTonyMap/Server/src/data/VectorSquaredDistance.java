@@ -0,0 +1,40 @@
+package src.data;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementazione SIMD di {@link SquaredDistance} basata sulla Vector API ({@code jdk.incubator.vector}).
+ * <p>
+ * I vettori sono elaborati a blocchi della larghezza preferita dalla CPU, accumulando i quadrati
+ * delle differenze con operazioni fused multiply-add; gli ultimi valori che non riempiono un blocco
+ * sono elaborati con una maschera sulle corsie valide.
+ * </p>
+ * <p>
+ * La classe va caricata solo se il modulo è presente, come fa {@link SquaredDistance#INSTANCE}.
+ * </p>
+ */
+class VectorSquaredDistance implements SquaredDistance {
+
+    /** Larghezza dei vettori preferita dalla CPU */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public double compute(double[] a, double[] b, int length) {
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int i = 0;
+        int upperBound = SPECIES.loopBound(length);
+        for (; i < upperBound; i += SPECIES.length()) {
+            DoubleVector diff = DoubleVector.fromArray(SPECIES, a, i).sub(DoubleVector.fromArray(SPECIES, b, i));
+            sum = diff.fma(diff, sum);
+        }
+        if (i < length) {
+            VectorMask<Double> tail = SPECIES.indexInRange(i, length);
+            DoubleVector diff = DoubleVector.fromArray(SPECIES, a, i, tail).sub(DoubleVector.fromArray(SPECIES, b, i, tail));
+            sum = diff.fma(diff, sum);
+        }
+        return sum.reduceLanes(VectorOperators.ADD);
+    }
+}
@@ -0,0 +1,445 @@
+package src.database;
+
+import src.exceptions.DatabaseConnectionException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Insieme limitato di connessioni al database, riutilizzate tra una richiesta e l'altra per evitare di
+ * ripetere ogni volta la connessione TCP e l'autenticazione.
+ * <p>
+ * Le connessioni restituite da {@link #borrow()} sono dei proxy: la loro {@code close()} restituisce la
+ * connessione al pool anziché chiuderla. Il comportamento del pool si configura con le proprietà di sistema:
+ * <ul>
+ * <li>{@code tonymap.db.pool.maxSize}: numero massimo di connessioni aperte (default 10);</li>
+ * <li>{@code tonymap.db.pool.timeoutMillis}: attesa massima di una connessione libera (default 30000);</li>
+ * <li>{@code tonymap.db.pool.idleMillis}: inattività dopo la quale una connessione libera viene chiusa (default 600000);</li>
+ * <li>{@code tonymap.db.pool.leakMillis}: utilizzo oltre il quale una connessione non restituita viene
+ * segnalata, insieme al punto in cui è stata ottenuta (default 60000).</li>
+ * </ul>
+ * Una connessione rimasta inutilizzata per più di {@link #VALIDATION_IDLE_MILLIS} millisecondi viene
+ * verificata prima di essere consegnata.
+ * </p>
+ */
+public class ConnectionPool {
+
+    /** Inattività oltre la quale una connessione viene verificata prima dell'uso, in millisecondi */
+    static final long VALIDATION_IDLE_MILLIS = 5000;
+
+    /** Attesa massima, in secondi, della verifica di una connessione */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /** Stringa di connessione al database */
+    private final String url;
+
+    /** Numero massimo di connessioni aperte */
+    private final int maxSize;
+
+    /** Attesa massima di una connessione libera, in millisecondi */
+    private final long timeoutMillis;
+
+    /** Inattività dopo la quale una connessione libera viene chiusa, in millisecondi */
+    private final long idleMillis;
+
+    /** Utilizzo oltre il quale una connessione viene segnalata come non restituita, in millisecondi */
+    private final long leakMillis;
+
+    /** Permessi di utilizzo, uno per ogni connessione che può essere aperta */
+    private final Semaphore permits;
+
+    /** Connessioni libere, dalla meno alla più recentemente restituita */
+    private final Deque<Pooled> idle = new ArrayDeque<>();
+
+    /** Connessioni in uso */
+    private final Set<Pooled> active = ConcurrentHashMap.newKeySet();
+
+    /** Numero di connessioni ottenute dal pool */
+    private final AtomicLong borrowed = new AtomicLong();
+
+    /** Tempo complessivo di attesa per ottenere una connessione, in nanosecondi */
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    /** Attesa massima registrata per ottenere una connessione, in nanosecondi */
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /** Numero di connessioni aperte verso il database */
+    private final AtomicLong created = new AtomicLong();
+
+    /** Numero di richieste scadute in attesa di una connessione libera */
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /** Numero di connessioni segnalate come non restituite */
+    private final AtomicLong leaks = new AtomicLong();
+
+    /**
+     * Connessione fisica gestita dal pool.
+     */
+    private final class Pooled {
+        /** Connessione al database */
+        private final Connection connection;
+
+        /** Istante dell'ultima restituzione al pool o dell'ultimo prelievo, in millisecondi */
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        /** Punto in cui la connessione è stata prelevata, per la segnalazione delle connessioni non restituite */
+        private volatile Throwable borrower;
+
+        /** Indica se la connessione è già stata segnalata come non restituita */
+        private boolean reported;
+
+        Pooled(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * Gestore delle chiamate sul proxy consegnato a chi preleva una connessione.
+     */
+    private final class Handler implements InvocationHandler {
+        /** Connessione prelevata */
+        private final Pooled pooled;
+
+        /** Indica se la connessione è già stata restituita */
+        private volatile boolean closed;
+
+        Handler(Pooled pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (closed) {
+                            return null;
+                        }
+                        closed = true;
+                    }
+                    giveBack(pooled);
+                    return null;
+                case "isClosed":
+                    return closed || pooled.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Connessione del pool " + pooled.connection;
+                default:
+                    if (closed) {
+                        throw new SQLException("Connessione già restituita al pool");
+                    }
+                    try {
+                        return method.invoke(pooled.connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    /**
+     * Crea un pool di connessioni configurato con le proprietà di sistema.
+     *
+     * @param url Stringa di connessione al database.
+     */
+    public ConnectionPool(String url) {
+        this(url, Integer.getInteger("tonymap.db.pool.maxSize", 10),
+                Long.getLong("tonymap.db.pool.timeoutMillis", 30000),
+                Long.getLong("tonymap.db.pool.idleMillis", 600000),
+                Long.getLong("tonymap.db.pool.leakMillis", 60000));
+    }
+
+    /**
+     * Crea un pool di connessioni.
+     *
+     * @param url Stringa di connessione al database.
+     * @param maxSize Numero massimo di connessioni aperte.
+     * @param timeoutMillis Attesa massima di una connessione libera, in millisecondi.
+     * @param idleMillis Inattività dopo la quale una connessione libera viene chiusa, in millisecondi.
+     * @param leakMillis Utilizzo oltre il quale una connessione viene segnalata come non restituita, in millisecondi.
+     */
+    public ConnectionPool(String url, int maxSize, long timeoutMillis, long idleMillis, long leakMillis) {
+        this.url = url;
+        this.maxSize = Math.max(1, maxSize);
+        this.timeoutMillis = timeoutMillis;
+        this.idleMillis = idleMillis;
+        this.leakMillis = leakMillis;
+        this.permits = new Semaphore(this.maxSize, true);
+
+        long period = Math.max(1000, Math.min(idleMillis, leakMillis) / 2);
+        ScheduledExecutorService housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeeping, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Preleva una connessione dal pool, aprendone una nuova se non ce ne sono di libere e non è stato
+     * raggiunto il numero massimo. La connessione va restituita chiamandone il metodo {@code close()}.
+     *
+     * @return Connessione al database.
+     * @throws DatabaseConnectionException Se non si ottiene una connessione entro il tempo massimo di attesa
+     * o se la connessione al database fallisce.
+     */
+    public Connection borrow() throws DatabaseConnectionException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new DatabaseConnectionException("Nessuna connessione al database libera entro " + timeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseConnectionException("Attesa di una connessione al database interrotta");
+        }
+
+        Pooled pooled;
+        try {
+            pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new Pooled(DriverManager.getConnection(url));
+                created.incrementAndGet();
+            }
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw new DatabaseConnectionException(e.toString());
+        }
+
+        long waited = System.nanoTime() - start;
+        borrowed.incrementAndGet();
+        waitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        pooled.lastUsed = System.currentTimeMillis();
+        pooled.borrower = new Throwable("Connessione prelevata da " + Thread.currentThread().getName());
+        pooled.reported = false;
+        active.add(pooled);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Handler(pooled));
+    }
+
+    /**
+     * Estrae la connessione libera restituita più di recente che risulti ancora valida, chiudendo quelle non valide.
+     *
+     * @return Connessione libera, oppure null se non ce ne sono.
+     */
+    private Pooled takeIdle() {
+        while (true) {
+            Pooled pooled;
+            synchronized (idle) {
+                pooled = idle.pollLast();
+            }
+            if (pooled == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - pooled.lastUsed < VALIDATION_IDLE_MILLIS || isValid(pooled)) {
+                return pooled;
+            }
+            closeQuietly(pooled);
+        }
+    }
+
+    /**
+     * Restituisce una connessione al pool, chiudendola se non è più utilizzabile.
+     *
+     * @param pooled Connessione restituita.
+     */
+    private void giveBack(Pooled pooled) {
+        active.remove(pooled);
+        try {
+            if (pooled.connection.isClosed()) {
+                return;
+            }
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            pooled.lastUsed = System.currentTimeMillis();
+            pooled.borrower = null;
+            synchronized (idle) {
+                idle.addLast(pooled);
+            }
+        } catch (SQLException e) {
+            closeQuietly(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Chiude le connessioni libere inattive da troppo tempo e segnala quelle in uso da troppo tempo.
+     */
+    private void housekeeping() {
+        long now = System.currentTimeMillis();
+        synchronized (idle) {
+            Iterator<Pooled> i = idle.iterator();
+            while (i.hasNext()) {
+                Pooled pooled = i.next();
+                if (now - pooled.lastUsed > idleMillis) {
+                    i.remove();
+                    closeQuietly(pooled);
+                }
+            }
+        }
+        for (Pooled pooled : active) {
+            Throwable borrower = pooled.borrower;
+            if (!pooled.reported && borrower != null && now - pooled.lastUsed > leakMillis) {
+                pooled.reported = true;
+                leaks.incrementAndGet();
+                System.err.println("[!] Connessione al database non restituita da " + (now - pooled.lastUsed) + " ms");
+                borrower.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Verifica che una connessione sia ancora utilizzabile.
+     *
+     * @param pooled Connessione da verificare.
+     * @return {@code true} se la connessione è valida.
+     */
+    private static boolean isValid(Pooled pooled) {
+        try {
+            return pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Chiude una connessione ignorando eventuali errori.
+     *
+     * @param pooled Connessione da chiudere.
+     */
+    private static void closeQuietly(Pooled pooled) {
+        try {
+            pooled.connection.close();
+        } catch (SQLException ignored) {
+            // la connessione è comunque inutilizzabile
+        }
+    }
+
+    /**
+     * Restituisce il numero massimo di connessioni aperte.
+     *
+     * @return Dimensione massima del pool.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Restituisce il numero di connessioni in uso.
+     *
+     * @return Connessioni prelevate e non ancora restituite.
+     */
+    public int getActiveConnections() {
+        return active.size();
+    }
+
+    /**
+     * Restituisce il numero di connessioni libere.
+     *
+     * @return Connessioni aperte in attesa di essere prelevate.
+     */
+    public int getIdleConnections() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * Restituisce il numero di richieste in attesa di una connessione libera.
+     *
+     * @return Richieste in coda.
+     */
+    public int getWaitingRequests() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Restituisce il numero di connessioni prelevate dalla creazione del pool.
+     *
+     * @return Connessioni prelevate.
+     */
+    public long getBorrowedCount() {
+        return borrowed.get();
+    }
+
+    /**
+     * Restituisce il numero di connessioni aperte verso il database dalla creazione del pool.
+     *
+     * @return Connessioni aperte.
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * Restituisce il tempo medio di attesa per ottenere una connessione, compresa l'eventuale apertura.
+     *
+     * @return Attesa media in millisecondi.
+     */
+    public double getAverageWaitMillis() {
+        long count = borrowed.get();
+        return count == 0 ? 0.0 : waitNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * Restituisce il tempo massimo di attesa per ottenere una connessione, compresa l'eventuale apertura.
+     *
+     * @return Attesa massima in millisecondi.
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    /**
+     * Restituisce il numero di richieste scadute in attesa di una connessione libera.
+     *
+     * @return Richieste scadute.
+     */
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    /**
+     * Restituisce il numero di connessioni segnalate come non restituite.
+     *
+     * @return Connessioni non restituite.
+     */
+    public long getLeakCount() {
+        return leaks.get();
+    }
+
+    /**
+     * Restituisce una descrizione dello stato del pool.
+     *
+     * @return Connessioni in uso, libere e tempi di attesa.
+     */
+    public String toString() {
+        return "attive=" + getActiveConnections() + "/" + maxSize + " libere=" + getIdleConnections()
+                + " in attesa=" + getWaitingRequests() + " attesa media=" + String.format("%.3f", getAverageWaitMillis())
+                + " ms attesa massima=" + String.format("%.3f", getMaxWaitMillis()) + " ms";
+    }
+}
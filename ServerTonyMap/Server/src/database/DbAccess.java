@@ -3,11 +3,12 @@ package src.database;
 import src.exceptions.DatabaseConnectionException;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
- * Gestisce l'accesso al DB per la lettura dei dati di training
+ * Gestisce l'accesso al DB per la lettura dei dati di training.
+ * Le connessioni sono prelevate da un {@link ConnectionPool} condiviso da tutte le istanze, per cui
+ * chiudere una connessione ottenuta da {@link #getConnection()} la restituisce al pool.
  * @author Map Tutor
  *
  */
@@ -21,35 +22,55 @@ public class DbAccess {
     private  String USER_ID = "MapUser";
     private  String PASSWORD = "map";
 
+    /** Pool di connessioni condiviso, creato alla prima connessione */
+    private static ConnectionPool pool;
+
     private Connection conn;
 
     /**
-     * Inizializza la connessione al database.
+     * Inizializza la connessione al database, prelevandola dal pool condiviso.
      *
      * @throws DatabaseConnectionException Eccezione lanciata se la connessione al database fallisce.
      */
     public void initConnection() throws DatabaseConnectionException
     {
-        try {
-            Class.forName(DRIVER_CLASS_NAME);
-        } catch(ClassNotFoundException e) {
-            System.out.println("[!] Driver not found: " + e.getMessage());
-            throw new DatabaseConnectionException(e.toString());
-        }
-        String connectionString = DBMS + "://" + SERVER + ":" + PORT + "/" + DATABASE
-                + "?user=" + USER_ID + "&password=" + PASSWORD + "&serverTimezone=UTC";
+        conn = getPool().borrow();
+    }
 
-        
-        try {
-            conn = DriverManager.getConnection(connectionString);
-        } catch(SQLException e) {
-           
-            throw new DatabaseConnectionException(e.toString());
+    /**
+     * Restituisce il pool di connessioni condiviso, creandolo se necessario.
+     *
+     * @return Pool di connessioni al database.
+     * @throws DatabaseConnectionException Eccezione lanciata se il driver del database non è disponibile.
+     */
+    public ConnectionPool getPool() throws DatabaseConnectionException {
+        synchronized (DbAccess.class) {
+            if (pool == null) {
+                try {
+                    Class.forName(DRIVER_CLASS_NAME);
+                } catch(ClassNotFoundException e) {
+                    System.out.println("[!] Driver not found: " + e.getMessage());
+                    throw new DatabaseConnectionException(e.toString());
+                }
+                String connectionString = DBMS + "://" + SERVER + ":" + PORT + "/" + DATABASE
+                        + "?user=" + USER_ID + "&password=" + PASSWORD + "&serverTimezone=UTC&useCursorFetch=true";
+                pool = new ConnectionPool(connectionString);
+            }
+            return pool;
         }
     }
 
     /**
-     * Restituisce la connessione al database.
+     * Restituisce il pool di connessioni condiviso, se è già stato creato.
+     *
+     * @return Pool di connessioni al database, oppure null se nessuna connessione è stata ancora richiesta.
+     */
+    public static synchronized ConnectionPool getSharedPool() {
+        return pool;
+    }
+
+    /**
+     * Restituisce una connessione al database, da chiudere al termine dell'utilizzo per restituirla al pool.
      *
      * @return Connessione al database.
      * @throws DatabaseConnectionException Eccezione lanciata se la connessione al database fallisce.
@@ -60,7 +81,7 @@ public class DbAccess {
     }
 
     /**
-     * Chiude la connessione al database.
+     * Restituisce al pool l'ultima connessione ottenuta.
      *
      * @throws SQLException Eccezione lanciata se si verifica un errore durante la chiusura della connessione.
      */
@@ -0,0 +1,138 @@
+package src.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Insieme di righe numeriche distinte, con il numero di volte in cui ognuna è stata inserita.
+ * <p>
+ * Le righe sono memorizzate nell'ordine del loro primo inserimento e indicizzate da una tabella hash
+ * ad indirizzamento aperto su array di interi, che non crea oggetti per le righe già presenti: una
+ * riga letta in un array di appoggio viene copiata solo se non è già stata inserita. Come per
+ * {@code SELECT DISTINCT}, 0.0 e -0.0 sono considerati uguali.
+ * </p>
+ */
+class RowIndex {
+
+    /** Righe distinte, nell'ordine del primo inserimento */
+    private final List<double[]> rows = new ArrayList<>();
+
+    /** Numero di inserimenti di ogni riga distinta */
+    private int[] counts = new int[16];
+
+    /** Posizione + 1 della riga in rows per ogni cella della tabella hash, 0 se la cella è libera */
+    private int[] slots = new int[32];
+
+    /** Hash di ogni riga distinta, per evitare di ricalcolarlo quando la tabella viene ingrandita */
+    private int[] hashes = new int[16];
+
+    /**
+     * Inserisce una riga, copiandola se non è già presente, e ne incrementa il numero di inserimenti.
+     *
+     * @param row Riga da inserire; l'array può essere riutilizzato dal chiamante.
+     * @return Posizione della riga tra le righe distinte.
+     */
+    int add(double[] row) {
+        int hash = hash(row);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int index = slots[slot] - 1;
+            if (hashes[index] == hash && equal(rows.get(index), row)) {
+                counts[index]++;
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int index = rows.size();
+        rows.add(row.clone());
+        if (index == counts.length) {
+            counts = Arrays.copyOf(counts, index * 2);
+            hashes = Arrays.copyOf(hashes, index * 2);
+        }
+        counts[index] = 1;
+        hashes[index] = hash;
+        slots[slot] = index + 1;
+        if (rows.size() * 2 > slots.length) {
+            rehash();
+        }
+        return index;
+    }
+
+    /**
+     * Restituisce il numero di righe distinte.
+     *
+     * @return Numero di righe distinte.
+     */
+    int size() {
+        return rows.size();
+    }
+
+    /**
+     * Restituisce la riga distinta nella posizione indicata.
+     *
+     * @param index Posizione della riga.
+     * @return Riga distinta.
+     */
+    double[] get(int index) {
+        return rows.get(index);
+    }
+
+    /**
+     * Restituisce il numero di inserimenti di ogni riga distinta.
+     *
+     * @return Array con un elemento per ogni riga distinta.
+     */
+    int[] getCounts() {
+        return Arrays.copyOf(counts, rows.size());
+    }
+
+    /**
+     * Raddoppia la tabella hash reinserendo le righe distinte.
+     */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int index = 0; index < rows.size(); index++) {
+            int slot = hashes[index] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = index + 1;
+        }
+    }
+
+    /**
+     * Calcola l'hash di una riga a partire dalla rappresentazione binaria dei suoi valori.
+     *
+     * @param row Riga.
+     * @return Hash della riga.
+     */
+    private static int hash(double[] row) {
+        long h = 1;
+        for (double value : row) {
+            // 0.0 e -0.0 devono avere lo stesso hash
+            h = 31 * h + (value == 0.0 ? 0L : Double.doubleToLongBits(value));
+        }
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Confronta due righe della stessa lunghezza.
+     *
+     * @param a Prima riga.
+     * @param b Seconda riga.
+     * @return {@code true} se le righe hanno gli stessi valori.
+     */
+    private static boolean equal(double[] a, double[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i] && !(Double.isNaN(a[i]) && Double.isNaN(b[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
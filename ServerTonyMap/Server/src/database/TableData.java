@@ -1,11 +1,14 @@
 package src.database;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import src.data.Example;
 import src.exceptions.DatabaseConnectionException;
 import src.exceptions.EmptySetException;
@@ -13,15 +16,87 @@ import src.exceptions.MissingNumberException;
 
 public class TableData {
 
+    /**
+     * Numero di righe richieste al DB per volta durante la lettura di una tabella, impostabile con la
+     * proprietà di sistema {@code tonymap.db.fetchSize}. Il valore di default {@link Integer#MIN_VALUE}
+     * chiede al driver MySQL di consegnare le righe una alla volta; un valore positivo utilizza un
+     * cursore lato server che legge quel numero di righe per volta.
+     */
+    static final int FETCH_SIZE = Integer.getInteger("tonymap.db.fetchSize", Integer.MIN_VALUE);
+
+    /**
+     * Indica se le tabelle vanno lette con {@link #getWeightedTransazioni(String)}, impostabile con la
+     * proprietà di sistema {@code tonymap.db.loadMode=weighted}; di default si utilizza {@code SELECT DISTINCT}.
+     */
+    public static final boolean WEIGHTED_LOAD = "weighted".equalsIgnoreCase(System.getProperty("tonymap.db.loadMode", "distinct"));
+
+    /**
+     * Indica se l'impronta delle tabelle va calcolata dai metadati della tabella, impostabile con la proprietà
+     * di sistema {@code tonymap.db.fingerprint=metadata}; di default si utilizza CHECKSUM TABLE.
+     */
+    static final boolean METADATA_FINGERPRINT = "metadata".equalsIgnoreCase(System.getProperty("tonymap.db.fingerprint", "checksum"));
+
+    /**
+     * Tempo, in millisecondi, per cui l'impronta di una tabella viene riutilizzata, impostabile con la
+     * proprietà di sistema {@code tonymap.db.fingerprintTtlMillis}; con 0 viene calcolata a ogni richiesta.
+     */
+    static final long FINGERPRINT_TTL_MILLIS = Long.getLong("tonymap.db.fingerprintTtlMillis", 1000);
+
+    /**
+     * Impronta di una tabella e istante in cui è stata calcolata.
+     * @param value impronta della tabella
+     * @param readAt istante del calcolo, in millisecondi
+     */
+    private record Fingerprint(String value, long readAt) {
+    }
+
+    /**
+     * Impronte già calcolate, per nome della tabella.
+     */
+    private static final ConcurrentHashMap<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+
     private DbAccess db;
 
     public TableData(DbAccess db) {
         this.db = db;
     }
 
+    /**
+     * Esempi letti da una tabella, con la molteplicità di ognuno.
+     */
+    public static class WeightedRows {
+        private final List<Example> examples;
+        private final int[] weights;
+
+        WeightedRows(List<Example> examples, int[] weights) {
+            this.examples = examples;
+            this.weights = weights;
+        }
+
+        /**
+         * Restituisce gli esempi distinti, nell'ordine in cui compaiono per la prima volta nella tabella.
+         * @return Lista di Example
+         */
+        public List<Example> getExamples() {
+            return examples;
+        }
+
+        /**
+         * Restituisce il numero di righe della tabella uguali a ogni esempio.
+         * @return Array con un peso per ogni esempio, oppure null se ogni esempio ha peso 1
+         */
+        public int[] getWeights() {
+            return weights;
+        }
+    }
+
     /**
      * interroga la tabella con nome table nel database e restituisce la 
      * lista di Example memorizzata nella tabella.
+     * <p>
+     * Lo schema della tabella viene letto prima della query, poi le righe sono lette in streaming: con il
+     * fetch size di default ({@link #FETCH_SIZE}) il driver consegna una riga alla volta anziché caricare
+     * l'intero risultato in memoria, e ogni riga viene copiata direttamente nell'array dell'Example.
      * @param table Nome tabella da interrogare
      * @return Lista di Example memorizzata nella tabella
      * @throws SQLException Errore nella interrogazione
@@ -30,6 +105,38 @@ public class TableData {
      */
     public List<Example> getDistinctTransazioni(String table) 
             throws SQLException, EmptySetException, MissingNumberException {
+        return load(table, false).getExamples();
+    }
+
+    /**
+     * interroga la tabella con nome table nel database e restituisce gli Example distinti memorizzati
+     * nella tabella, ognuno con il numero di righe uguali ad esso.
+     * <p>
+     * Al posto di {@code SELECT DISTINCT}, che obbliga il DBMS a ordinare o indicizzare l'intera tabella,
+     * le righe sono lette in streaming e raggruppate durante la lettura tramite una tabella hash su
+     * array di tipo primitivo: in memoria resta una sola copia di ogni riga distinta.
+     * @param table Nome tabella da interrogare
+     * @return Example distinti e relativi pesi
+     * @throws SQLException Errore nella interrogazione
+     * @throws EmptySetException Tabella vuota
+     * @throws MissingNumberException Presenza di attributi non numerici
+     */
+    public WeightedRows getWeightedTransazioni(String table)
+            throws SQLException, EmptySetException, MissingNumberException {
+        return load(table, true);
+    }
+
+    /**
+     * Legge in streaming le righe della tabella.
+     * @param table Nome tabella da interrogare
+     * @param weighted true per raggruppare le righe uguali in Java contandole, false per affidarsi a {@code SELECT DISTINCT}
+     * @return Example letti e, se weighted è true, relativi pesi
+     * @throws SQLException Errore nella interrogazione o nella connessione al database
+     * @throws EmptySetException Tabella vuota
+     * @throws MissingNumberException Presenza di attributi non numerici
+     */
+    private WeightedRows load(String table, boolean weighted)
+            throws SQLException, EmptySetException, MissingNumberException {
         List<Example> examples = new ArrayList<>();
         Connection conn = null;
         Statement stmt = null;
@@ -37,32 +144,68 @@ public class TableData {
 
         try {
             conn = db.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery("SELECT DISTINCT * FROM " + table);
+            // lo schema va letto prima dello streaming, che occupa la connessione fino alla fine del risultato
+            TableSchema schema = TableSchema.forTable(conn, table);
+            TableSchema.Column column = firstNonNumeric(schema);
+            if (column != null) {
+                if (isEmpty(conn, table)) {
+                    throw new EmptySetException("La tabella " + table + " è vuota.");
+                }
+                throw new MissingNumberException("L'attributo " + column.getColumnName() + " non è numerico.");
+            }
+
+            stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(FETCH_SIZE);
+            rs = stmt.executeQuery((weighted ? "SELECT * FROM " : "SELECT DISTINCT * FROM ") + table);
+            boolean hasRows = rs.next();
 
-            TableSchema schema = new TableSchema(db, table);
+            // se la tabella è cambiata dopo la lettura dello schema, lo schema viene ricavato dal risultato
+            TableSchema current = TableSchema.verify(table, schema, rs.getMetaData());
+            if (current != schema) {
+                schema = current;
+                column = firstNonNumeric(schema);
+                if (column != null && hasRows) {
+                    throw new MissingNumberException("L'attributo " + column.getColumnName() + " non è numerico.");
+                }
+            }
+            int columns = schema.getNumberOfAttributes();
 
-            if (!rs.next()) {
+            if (!hasRows) {
                 throw new EmptySetException("La tabella " + table + " è vuota.");
             }
 
-            do {
-                Example e = new Example();
-                for (int i = 0; i < schema.getNumberOfAttributes(); i++) {
-                    TableSchema.Column column = schema.getColumn(i);
-                    if (column.isNumber()) {
-                        e.add(rs.getDouble(i+1));
-                    } else {
-                        throw new MissingNumberException("L'attributo " + column.getColumnName() + " non è numerico.");
+            if (weighted) {
+                RowIndex index = new RowIndex();
+                double[] row = new double[columns];
+                do {
+                    for (int i = 0; i < columns; i++) {
+                        row[i] = rs.getDouble(i + 1);
                     }
+                    index.add(row);
+                } while (rs.next());
+
+                for (int i = 0; i < index.size(); i++) {
+                    examples.add(new Example(index.get(i)));
                 }
-                examples.add(e);
+                return new WeightedRows(examples, index.getCounts());
+            }
+
+            do {
+                double[] row = new double[columns];
+                for (int i = 0; i < columns; i++) {
+                    row[i] = rs.getDouble(i + 1);
+                }
+                examples.add(new Example(row));
             } while (rs.next());
 
-            return examples;
+            return new WeightedRows(examples, null);
+        } catch (SQLException e) {
+            // la tabella potrebbe essere stata eliminata o modificata: lo schema verrà riletto
+            TableSchema.invalidate(table);
+            throw e;
         } catch (DatabaseConnectionException e) {
-            System.out.println("Errore nella connessione al db");
-            return examples;
+            // senza connessione non c'è nulla da restituire: un risultato vuoto verrebbe scambiato per la tabella
+            throw new SQLException("Errore nella connessione al db: " + e.getMessage(), e);
         }  finally {
             if (rs != null) rs.close();
             if (stmt != null) stmt.close();
@@ -70,6 +213,35 @@ public class TableData {
         }
     }
 
+    /**
+     * Restituisce il primo attributo non numerico dello schema.
+     * @param schema Schema della tabella
+     * @return Attributo non numerico, oppure null se tutti gli attributi sono numerici
+     */
+    private TableSchema.Column firstNonNumeric(TableSchema schema) {
+        for (int i = 0; i < schema.getNumberOfAttributes(); i++) {
+            TableSchema.Column column = schema.getColumn(i);
+            if (!column.isNumber()) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Verifica se una tabella non contiene righe.
+     * @param conn Connessione al database
+     * @param table Nome della tabella
+     * @return true se la tabella è vuota
+     * @throws SQLException Errore nella interrogazione
+     */
+    private boolean isEmpty(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+            return !rs.next();
+        }
+    }
+
     /**
      * Restituisce la lista dei nomi delle tabelle presenti nel database.
      * @return Lista dei nomi delle tabelle presenti nel database
@@ -103,4 +275,126 @@ public class TableData {
             }
         }
     }
+
+    /**
+     * Restituisce un'impronta del contenuto della tabella, che cambia quando la tabella viene modificata.
+     * <p>
+     * Di default l'impronta è il risultato di CHECKSUM TABLE, che legge l'intera tabella e cambia anche quando
+     * una modifica non ne altera il numero di righe. Con la proprietà di sistema
+     * {@code tonymap.db.fingerprint=metadata} l'impronta è invece composta dall'istante dell'ultima modifica
+     * della tabella ({@code information_schema.TABLES.UPDATE_TIME}) e dal numero di righe, senza leggerne il
+     * contenuto; se il DBMS non fornisce l'istante si ripiega su CHECKSUM TABLE.
+     * </p>
+     * <p>
+     * Un'impronta viene riutilizzata per {@link #FINGERPRINT_TTL_MILLIS} millisecondi: una modifica della
+     * tabella può quindi essere rilevata con quel ritardo.
+     * </p>
+     * @param table Nome della tabella
+     * @return Impronta della tabella, oppure null se non è possibile calcolarla
+     */
+    public String getFingerprint(String table) {
+        Fingerprint memo = fingerprints.get(table);
+        if (memo != null && System.currentTimeMillis() - memo.readAt() < FINGERPRINT_TTL_MILLIS) {
+            return memo.value();
+        }
+
+        String value = readFingerprint(table);
+        if (value != null) {
+            fingerprints.put(table, new Fingerprint(value, System.currentTimeMillis()));
+        }
+        return value;
+    }
+
+    /**
+     * Calcola l'impronta di una tabella come {@link #getFingerprint(String)}, senza riutilizzare impronte
+     * già calcolate.
+     * @param table Nome della tabella
+     * @return Impronta della tabella, oppure null se non è possibile calcolarla
+     */
+    String readFingerprint(String table) {
+        Connection conn = null;
+        try {
+            conn = db.getConnection();
+            String value = METADATA_FINGERPRINT ? getMetadataFingerprint(conn, table) : null;
+            if (value == null) {
+                value = getChecksumFingerprint(conn, table);
+            }
+            return value;
+        } catch (SQLException | DatabaseConnectionException e) {
+            return null;
+        } finally {
+            try {
+                if (conn != null) conn.close();
+            } catch (SQLException e) {
+                System.out.println("Errore nella chiusura della connessione al db");
+            }
+        }
+    }
+
+    /**
+     * Calcola l'impronta di una tabella dall'istante della sua ultima modifica e dal numero di righe.
+     * <p>
+     * MySQL 8 memorizza i valori di {@code information_schema.TABLES} per
+     * {@code information_schema_stats_expiry} secondi (di default un giorno), per cui la sessione li richiede
+     * aggiornati; i DBMS che non conoscono la variabile non memorizzano tali valori.
+     * </p>
+     * @param conn Connessione al database
+     * @param table Nome della tabella
+     * @return Impronta della tabella, oppure null se il DBMS non fornisce l'istante dell'ultima modifica
+     * @throws SQLException Errore nella interrogazione
+     */
+    static String getMetadataFingerprint(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET SESSION information_schema_stats_expiry = 0");
+        } catch (SQLException e) {
+            // variabile non supportata dal DBMS
+        }
+
+        Timestamp updated;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT UPDATE_TIME FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?")) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                updated = rs.getTimestamp(1);
+            }
+        } catch (SQLException e) {
+            // il DBMS non espone information_schema
+            return null;
+        }
+        if (updated == null) {
+            // tabella non modificata dall'avvio del DBMS, oppure motore che non registra le modifiche
+            return null;
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            long rows = rs.next() ? rs.getLong(1) : 0;
+            return "updated:" + updated.getTime() + ",rows:" + rows;
+        }
+    }
+
+    /**
+     * Calcola l'impronta di una tabella con CHECKSUM TABLE; se il DBMS non lo fornisce si ripiega sul numero di righe.
+     * @param conn Connessione al database
+     * @param table Nome della tabella
+     * @return Impronta della tabella, oppure null se la tabella non ha righe da contare
+     * @throws SQLException Errore nella interrogazione
+     */
+    static String getChecksumFingerprint(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("CHECKSUM TABLE " + table)) {
+                if (rs.next()) {
+                    long checksum = rs.getLong(2);
+                    if (!rs.wasNull()) {
+                        return "checksum:" + checksum;
+                    }
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                return rs.next() ? "count:" + rs.getLong(1) : null;
+            }
+        }
+    }
 }
@@ -5,10 +5,13 @@ import src.exceptions.DatabaseConnectionException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * La classe TableSchema rappresenta lo schema di una tabella in un database relazionale.
@@ -16,7 +19,6 @@ import java.util.List;
  * utilizzando una connessione al database fornita da {@link DbAccess}.
  */
 public class TableSchema {
-	private DbAccess db;
 
 	/**
 	 * La classe interna Column rappresenta una colonna di una tabella con il nome e il tipo di dati.
@@ -64,14 +66,56 @@ public class TableSchema {
 		}
 	}
 
+	/**
+	 * Corrispondenza tra i tipi SQL e i tipi Java, costruita una sola volta e condivisa da tutti gli schemi.
+	 */
+	// http://java.sun.com/j2se/1.3/docs/guide/jdbc/getstart/mapping.html
+	private static final Map<String, String> mapSQL_JAVATypes = Map.of(
+			"CHAR", "string",
+			"VARCHAR", "string",
+			"LONGVARCHAR", "string",
+			"BIT", "string",
+			"SHORT", "number",
+			"INT", "number",
+			"LONG", "number",
+			"FLOAT", "number",
+			"DOUBLE", "number");
+
+	/**
+	 * Tempo, in millisecondi, per cui uno schema letto dal database viene riutilizzato, impostabile con la
+	 * proprietà di sistema {@code tonymap.db.schemaTtlMillis}.
+	 */
+	static final long TTL_MILLIS = Long.getLong("tonymap.db.schemaTtlMillis", 60000);
+
+	/**
+	 * Schemi già letti, per nome della tabella.
+	 */
+	private static final ConcurrentHashMap<String, TableSchema> cache = new ConcurrentHashMap<>();
+
 	/**
 	 * Lista delle colonne che compongono lo schema della tabella.
 	 */
 	List<Column> tableSchema = new ArrayList<Column>();
 
+	/**
+	 * Nomi di tutte le colonne della tabella, comprese quelle di tipo non gestito, nell'ordine della tabella.
+	 */
+	private final List<String> columnNames = new ArrayList<>();
+
+	/**
+	 * Tipo Java ("string" o "number") di ogni colonna di {@link #columnNames}, null per i tipi non gestiti.
+	 */
+	private final List<String> columnTypes = new ArrayList<>();
+
+	/**
+	 * Istante in cui lo schema è stato letto, in millisecondi.
+	 */
+	private final long loadedAt = System.currentTimeMillis();
+
 	/**
 	 * Costruttore che inizializza lo schema di una tabella specificata recuperando
-	 * i metadati del database.
+	 * i metadati del database. La connessione viene prelevata dal pool di {@link DbAccess}
+	 * e restituita al termine.
 	 *
 	 * @param db Oggetto {@link DbAccess} per accedere al database.
 	 * @param tableName Nome della tabella di cui creare lo schema.
@@ -79,30 +123,136 @@ public class TableSchema {
 	 * @throws DatabaseConnectionException Se la connessione al database non è valida.
 	 */
 	public TableSchema(DbAccess db, String tableName) throws SQLException, DatabaseConnectionException {
-		this.db = db;
-		HashMap<String, String> mapSQL_JAVATypes = new HashMap<String, String>();
-		// http://java.sun.com/j2se/1.3/docs/guide/jdbc/getstart/mapping.html
-		mapSQL_JAVATypes.put("CHAR", "string");
-		mapSQL_JAVATypes.put("VARCHAR", "string");
-		mapSQL_JAVATypes.put("LONGVARCHAR", "string");
-		mapSQL_JAVATypes.put("BIT", "string");
-		mapSQL_JAVATypes.put("SHORT", "number");
-		mapSQL_JAVATypes.put("INT", "number");
-		mapSQL_JAVATypes.put("LONG", "number");
-		mapSQL_JAVATypes.put("FLOAT", "number");
-		mapSQL_JAVATypes.put("DOUBLE", "number");
-
-		Connection con = db.getConnection();
+		try (Connection con = db.getConnection()) {
+			readColumns(con, tableName);
+		}
+	}
+
+	/**
+	 * Costruttore che inizializza lo schema di una tabella specificata utilizzando una connessione
+	 * già ottenuta dal chiamante, che resta responsabile della sua chiusura.
+	 *
+	 * @param con Connessione al database.
+	 * @param tableName Nome della tabella di cui creare lo schema.
+	 * @throws SQLException Se si verifica un errore durante l'accesso ai metadati della tabella.
+	 */
+	public TableSchema(Connection con, String tableName) throws SQLException {
+		readColumns(con, tableName);
+	}
+
+	/**
+	 * Costruttore che ricava lo schema dai metadati del risultato di una query sull'intera tabella.
+	 *
+	 * @param meta Metadati del risultato.
+	 * @throws SQLException Se si verifica un errore durante l'accesso ai metadati.
+	 */
+	private TableSchema(ResultSetMetaData meta) throws SQLException {
+		for (int i = 1; i <= meta.getColumnCount(); i++) {
+			addColumn(meta.getColumnName(i), meta.getColumnTypeName(i));
+		}
+	}
+
+	/**
+	 * Restituisce lo schema di una tabella, riutilizzando quello già letto se non è più vecchio di
+	 * {@link #TTL_MILLIS} millisecondi.
+	 *
+	 * @param con Connessione al database, utilizzata solo se lo schema va letto.
+	 * @param tableName Nome della tabella.
+	 * @return Schema della tabella.
+	 * @throws SQLException Se si verifica un errore durante l'accesso ai metadati della tabella.
+	 */
+	public static TableSchema forTable(Connection con, String tableName) throws SQLException {
+		TableSchema schema = cache.get(tableName);
+		if (schema == null || System.currentTimeMillis() - schema.loadedAt >= TTL_MILLIS) {
+			schema = new TableSchema(con, tableName);
+			if (schema.columnNames.isEmpty()) {
+				// la tabella non esiste: non si memorizza nulla
+				cache.remove(tableName);
+			} else {
+				cache.put(tableName, schema);
+			}
+		}
+		return schema;
+	}
+
+	/**
+	 * Restituisce lo schema corrispondente al risultato di una query sull'intera tabella. Se lo schema
+	 * indicato non corrisponde più alle colonne del risultato, perché la tabella è stata modificata,
+	 * ne viene ricavato uno nuovo dai metadati del risultato, che sostituisce quello memorizzato.
+	 *
+	 * @param tableName Nome della tabella.
+	 * @param schema Schema utilizzato per preparare la query.
+	 * @param meta Metadati del risultato della query.
+	 * @return Schema valido per il risultato.
+	 * @throws SQLException Se si verifica un errore durante l'accesso ai metadati.
+	 */
+	public static TableSchema verify(String tableName, TableSchema schema, ResultSetMetaData meta) throws SQLException {
+		if (schema.matches(meta)) {
+			return schema;
+		}
+		TableSchema updated = new TableSchema(meta);
+		cache.put(tableName, updated);
+		return updated;
+	}
+
+	/**
+	 * Elimina lo schema memorizzato di una tabella, da chiamare quando la tabella viene modificata.
+	 *
+	 * @param tableName Nome della tabella.
+	 */
+	public static void invalidate(String tableName) {
+		cache.remove(tableName);
+	}
+
+	/**
+	 * Legge dai metadati del database le colonne della tabella.
+	 *
+	 * @param con Connessione al database.
+	 * @param tableName Nome della tabella di cui creare lo schema.
+	 * @throws SQLException Se si verifica un errore durante l'accesso ai metadati della tabella.
+	 */
+	private void readColumns(Connection con, String tableName) throws SQLException {
 		DatabaseMetaData meta = con.getMetaData();
-		ResultSet res = meta.getColumns(null, null, tableName, null);
+		try (ResultSet res = meta.getColumns(null, null, tableName, null)) {
+			while (res.next()) {
+				addColumn(res.getString("COLUMN_NAME"), res.getString("TYPE_NAME"));
+			}
+		}
+	}
+
+	/**
+	 * Aggiunge una colonna allo schema; le colonne di tipo non gestito sono ricordate solo per nome.
+	 *
+	 * @param name Nome della colonna.
+	 * @param sqlType Nome del tipo SQL della colonna.
+	 */
+	private void addColumn(String name, String sqlType) {
+		columnNames.add(name);
+		columnTypes.add(mapSQL_JAVATypes.get(sqlType));
+		if (mapSQL_JAVATypes.containsKey(sqlType))
+			tableSchema.add(new Column(name, mapSQL_JAVATypes.get(sqlType)));
+	}
 
-		while (res.next()) {
-			if (mapSQL_JAVATypes.containsKey(res.getString("TYPE_NAME")))
-				tableSchema.add(new Column(
-						res.getString("COLUMN_NAME"),
-						mapSQL_JAVATypes.get(res.getString("TYPE_NAME"))));
+	/**
+	 * Verifica che le colonne del risultato di una query siano quelle dello schema. Oltre al nome viene
+	 * confrontato il tipo di ogni colonna, così da rilevare anche una colonna a cui è stato cambiato tipo:
+	 * i tipi SQL sono confrontati tramite il tipo Java corrispondente, che decide come leggerne i valori.
+	 *
+	 * @param meta Metadati del risultato.
+	 * @return {@code true} se il risultato ha le stesse colonne, con gli stessi tipi e nello stesso ordine.
+	 * @throws SQLException Se si verifica un errore durante l'accesso ai metadati.
+	 */
+	private boolean matches(ResultSetMetaData meta) throws SQLException {
+		if (meta.getColumnCount() != columnNames.size()) {
+			return false;
+		}
+		for (int i = 0; i < columnNames.size(); i++) {
+			if (!columnNames.get(i).equalsIgnoreCase(meta.getColumnName(i + 1))
+					|| !Objects.equals(columnTypes.get(i), mapSQL_JAVATypes.get(meta.getColumnTypeName(i + 1)))) {
+				return false;
+			}
 		}
-		res.close();
+		return true;
 	}
 
 	/**
@@ -124,8 +274,3 @@ public class TableSchema {
 		return tableSchema.get(index);
 	}
 }
-
-
-		     
-
-
@@ -0,0 +1,92 @@
+package src;
+
+import src.clustering.CancellationToken;
+
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Controlla, mentre il server esegue un clustering per un client, che il client sia ancora connesso,
+ * annullando il clustering se si disconnette.
+ * <p>
+ * Durante il clustering il client attende il risultato senza inviare nulla, per cui un thread virtuale
+ * legge dal socket con un timeout breve: la fine dello stream indica che il client si è disconnesso,
+ * mentre un eventuale byte ricevuto viene restituito allo stream, in modo che sia letto normalmente dopo
+ * il clustering. Alla chiusura il controllo termina e viene ripristinato il timeout originale del socket.
+ * </p>
+ */
+class disconnectWatch implements AutoCloseable {
+
+    /** Intervallo, in millisecondi, tra due controlli della connessione */
+    static final int POLL_MILLIS = 50;
+
+    private final Socket socket;
+    private final int timeout;
+    private final Thread watcher;
+    private volatile boolean done;
+    private volatile boolean disconnected;
+
+    /**
+     * Avvia il controllo della connessione
+     * @param socket socket del client
+     * @param input stream del socket, letto anche dall'ObjectInputStream della sessione
+     * @param token clustering da annullare se il client si disconnette
+     * @throws SocketException se non è possibile impostare il timeout del socket
+     */
+    disconnectWatch(Socket socket, PushbackInputStream input, CancellationToken token) throws SocketException {
+        this.socket = socket;
+        timeout = socket.getSoTimeout();
+        socket.setSoTimeout(POLL_MILLIS);
+        watcher = Thread.ofVirtual().name("watch-" + socket.getPort()).start(() -> {
+            while (!done) {
+                try {
+                    int b = input.read();
+                    if (b < 0) {
+                        disconnected = true;
+                        token.cancel();
+                    } else {
+                        input.unread(b);
+                    }
+                    return;
+                } catch (SocketTimeoutException e) {
+                    // il client è ancora connesso e in attesa
+                } catch (IOException e) {
+                    disconnected = true;
+                    token.cancel();
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * Indica se il client si è disconnesso durante il controllo
+     * @return {@code true} se il client si è disconnesso
+     */
+    boolean isDisconnected() {
+        return disconnected;
+    }
+
+    /**
+     * Termina il controllo, attendendo al più {@link #POLL_MILLIS} millisecondi, e ripristina il timeout del socket.
+     */
+    @Override
+    public void close() {
+        done = true;
+        try {
+            watcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (!socket.isClosed()) {
+                socket.setSoTimeout(timeout);
+            }
+        } catch (SocketException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -2,7 +2,7 @@ package src.distance;
 
 import src.clustering.Cluster;
 import src.data.Data;
-import src.data.Example;
+import src.data.DistanceMatrix;
 
 import java.util.Iterator;
 
@@ -10,14 +10,15 @@ import java.util.Iterator;
  * Implementazione della metrica di distanza basata sull'Average Linkage.
  * Calcola la distanza media tra tutte le coppie di esempi appartenenti a due cluster distinti.
  */
-public class AverageLinkDistance implements ClusterDistance {
+public class AverageLinkDistance implements LanceWilliamsDistance {
 
     /**
      * Calcola la distanza media tra due cluster utilizzando gli esempi presenti nel dataset.
      * <p>
      * La distanza è calcolata come la somma delle distanze tra ogni coppia di esempi
      * (uno appartenente al primo cluster e l'altro al secondo cluster), divisa per il prodotto
-     * del numero di esempi nei due cluster.
+     * del numero di esempi nei due cluster. Ogni esempio conta tante volte quanto il suo peso
+     * ({@link Data#getWeight(int)}), come se le righe duplicate fossero presenti nel dataset.
      * </p>
      *
      * @param c1 Primo cluster.
@@ -28,21 +29,60 @@ public class AverageLinkDistance implements ClusterDistance {
     public double distance(Cluster c1, Cluster c2, Data d) {
 
         double average = 0;
+        long weight1 = 0;
+        long weight2 = 0;
+        DistanceMatrix matrix = d.distance();
+
+        for (int e2 : c2) {
+            weight2 += d.getWeight(e2);
+        }
 
         Iterator<Integer> i1 = c1.iterator();
 
         // Itera su tutti gli esempi del primo cluster
         while (i1.hasNext()) {
 
-            Example e1 = d.getExample(i1.next());
+            int e1 = i1.next();
+            double w1 = d.getWeight(e1);
+            weight1 += d.getWeight(e1);
             Iterator<Integer> i2 = c2.iterator();
 
-            // Calcola la distanza con ogni esempio del secondo cluster
+            // Legge la distanza da ogni esempio del secondo cluster
             while (i2.hasNext()) {
-                average += e1.distance(d.getExample(i2.next()));
+                int e2 = i2.next();
+                average += w1 * d.getWeight(e2) * matrix.get(e1, e2);
             }
         }
         // Restituisce la distanza media
-        return (average / (c1.getSize() * c2.getSize()));
+        return (average / ((double) weight1 * weight2));
+    }
+
+    /**
+     * Aggiornamento di Lance-Williams per l'Average Linkage: la distanza dal cluster fuso è
+     * la media delle distanze dei due cluster di partenza, pesata sul numero dei loro esempi
+     * (la somma dei pesi degli esempi, se il dataset è pesato).
+     *
+     * @param dik Distanza tra il cluster {@code i} e il cluster {@code k}.
+     * @param djk Distanza tra il cluster {@code j} e il cluster {@code k}.
+     * @param dij Distanza tra il cluster {@code i} e il cluster {@code j}.
+     * @param ni Peso complessivo degli esempi del cluster {@code i}.
+     * @param nj Peso complessivo degli esempi del cluster {@code j}.
+     * @param nk Peso complessivo degli esempi del cluster {@code k}.
+     * @return La distanza media tra il cluster fuso e il cluster {@code k}.
+     */
+    public double update(double dik, double djk, double dij, int ni, int nj, int nk) {
+        return (ni * dik + nj * djk) / (ni + nj);
+    }
+
+    /**
+     * La media pesata dell'aggiornamento somma le distanze in un ordine diverso da
+     * {@link #distance(Cluster, Cluster, Data)}, per cui le due distanze possono differire
+     * nell'ultima cifra significativa.
+     *
+     * @return {@code false}.
+     */
+    @Override
+    public boolean isExactUpdate() {
+        return false;
     }
 }
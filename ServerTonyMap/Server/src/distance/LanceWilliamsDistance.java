@@ -0,0 +1,38 @@
+package src.distance;
+
+/**
+ * Estensione di {@link ClusterDistance} per le metriche che soddisfano la formula di
+ * aggiornamento di Lance-Williams.
+ * <p>
+ * Per queste metriche la distanza tra il cluster ottenuto fondendo {@code i} e {@code j}
+ * e un terzo cluster {@code k} può essere calcolata a partire dalle sole distanze già note
+ * {@code d(i,k)}, {@code d(j,k)}, {@code d(i,j)} e dalle dimensioni dei cluster, senza
+ * scorrere nuovamente gli esempi che li compongono.
+ * </p>
+ */
+public interface LanceWilliamsDistance extends ClusterDistance {
+
+	/**
+	 * Calcola la distanza tra il cluster ottenuto dalla fusione di {@code i} e {@code j} e il cluster {@code k}.
+	 *
+	 * @param dik Distanza tra il cluster {@code i} e il cluster {@code k}.
+	 * @param djk Distanza tra il cluster {@code j} e il cluster {@code k}.
+	 * @param dij Distanza tra il cluster {@code i} e il cluster {@code j}.
+	 * @param ni Numero di esempi del cluster {@code i}, ognuno contato secondo il suo peso.
+	 * @param nj Numero di esempi del cluster {@code j}, ognuno contato secondo il suo peso.
+	 * @param nk Numero di esempi del cluster {@code k}, ognuno contato secondo il suo peso.
+	 * @return La distanza tra il cluster fuso e il cluster {@code k}.
+	 */
+	double update(double dik, double djk, double dij, int ni, int nj, int nk);
+
+	/**
+	 * Indica se la distanza ottenuta con {@link #update(double, double, double, int, int, int)} coincide
+	 * sempre con quella calcolata da {@link #distance(src.clustering.Cluster, src.clustering.Cluster, src.data.Data)}
+	 * sugli esempi dei due cluster, senza differenze di arrotondamento.
+	 *
+	 * @return {@code true} se le due distanze coincidono sempre.
+	 */
+	default boolean isExactUpdate() {
+		return true;
+	}
+}
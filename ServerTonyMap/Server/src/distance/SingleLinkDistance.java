@@ -2,7 +2,7 @@ package src.distance;
 
 import src.clustering.Cluster;
 import src.data.Data;
-import src.data.Example;
+import src.data.DistanceMatrix;
 
 import java.util.Iterator;
 
@@ -14,7 +14,7 @@ import java.util.Iterator;
  * del primo cluster e un esempio del secondo cluster.
  * </p>
  */
-public class SingleLinkDistance implements ClusterDistance {
+public class SingleLinkDistance implements LanceWilliamsDistance {
 
 	/**
 	 * Calcola la distanza "Single Link" tra due cluster specificati utilizzando un dataset di riferimento.
@@ -28,19 +28,37 @@ public class SingleLinkDistance implements ClusterDistance {
 	public double distance(Cluster c1, Cluster c2, Data d) {
 
 		double min = Double.MAX_VALUE;
+		DistanceMatrix matrix = d.distance();
 
 		Iterator<Integer> i1 = c1.iterator();
 		while (i1.hasNext()) {
 
-			Example e1 = d.getExample(i1.next());
+			int e1 = i1.next();
 
 			Iterator<Integer> i2 = c2.iterator();
 			while (i2.hasNext()) {
-				double distance = e1.distance(d.getExample(i2.next()));
+				double distance = matrix.get(e1, i2.next());
 				if (distance < min)
 					min = distance;
 			}
 		}
 		return min;
 	}
+
+	/**
+	 * Aggiornamento di Lance-Williams per la strategia "Single Link": la distanza dal cluster
+	 * fuso è la minore tra le distanze dei due cluster di partenza.
+	 *
+	 * @param dik Distanza tra il cluster {@code i} e il cluster {@code k}.
+	 * @param djk Distanza tra il cluster {@code j} e il cluster {@code k}.
+	 * @param dij Distanza tra il cluster {@code i} e il cluster {@code j}.
+	 * @param ni Numero di esempi del cluster {@code i}.
+	 * @param nj Numero di esempi del cluster {@code j}.
+	 * @param nk Numero di esempi del cluster {@code k}.
+	 * @return La distanza minima tra {@code dik} e {@code djk}.
+	 */
+	@Override
+	public double update(double dik, double djk, double dij, int ni, int nj, int nk) {
+		return Math.min(dik, djk);
+	}
 }
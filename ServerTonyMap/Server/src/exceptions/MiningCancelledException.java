@@ -0,0 +1,33 @@
+package src.exceptions;
+
+/**
+ * da sollevare quando la costruzione di un dendrogramma viene interrotta, perché annullata o perché
+ * è scaduto il tempo a disposizione. È un'eccezione non controllata perché viene sollevata all'interno
+ * dei cicli delle strategie di clustering e del calcolo delle distanze, attraverso metodi di interfacce
+ * che non la dichiarano.
+ */
+public class MiningCancelledException extends RuntimeException {
+
+    /** Identificativo di versione per la serializzazione */
+    private static final long serialVersionUID = 1L;
+
+    /** Numero di livelli completati e conservati nel dendrogramma, 0 se il dendrogramma non è utilizzabile */
+    private final int levels;
+
+    public MiningCancelledException(String msg) {
+        this(msg, 0);
+    }
+
+    public MiningCancelledException(String msg, int levels) {
+        super(msg);
+        this.levels = levels;
+    }
+
+    /**
+     * Restituisce il numero di livelli completati prima dell'interruzione e conservati nel dendrogramma
+     * @return numero di livelli, compreso il livello 0, oppure 0 se il dendrogramma non è utilizzabile
+     */
+    public int getLevels() {
+        return levels;
+    }
+}
@@ -0,0 +1,73 @@
+package src.jobs;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Esecutore dei clustering asincroni, separato dai thread che gestiscono le connessioni con i client.
+ * <p>
+ * I lavori sono eseguiti da al più {@code tonymap.jobs.threads} thread (di default il numero di
+ * processori) e al più {@code tonymap.jobs.queue} lavori (di default 16) possono attendere un thread
+ * libero: oltre questo limite i nuovi lavori sono rifiutati, in modo che i client possano riprovare
+ * anziché accumulare lavoro che il server non riesce a smaltire.
+ * </p>
+ */
+public class JobScheduler {
+
+    /** Esecutore condiviso dal server */
+    private static final JobScheduler SHARED = new JobScheduler(
+            Integer.getInteger("tonymap.jobs.threads", Runtime.getRuntime().availableProcessors()),
+            Integer.getInteger("tonymap.jobs.queue", 16));
+
+    /** Thread che eseguono i lavori */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Crea un esecutore con il numero di thread e la coda indicati
+     * @param threads numero di thread che eseguono i lavori
+     * @param queue numero massimo di lavori in attesa
+     */
+    public JobScheduler(int threads, int queue) {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue),
+                Thread.ofPlatform().name("mining-", 0).daemon(true).factory());
+    }
+
+    /**
+     * Restituisce l'esecutore condiviso dal server
+     * @return esecutore dei clustering
+     */
+    public static JobScheduler shared() {
+        return SHARED;
+    }
+
+    /**
+     * Affida un lavoro all'esecutore
+     * @param job lavoro da eseguire
+     * @throws RejectedExecutionException se la coda dei lavori in attesa è piena
+     */
+    public void submit(MiningJob job) throws RejectedExecutionException {
+        executor.execute(job);
+    }
+
+    /**
+     * Annulla un lavoro, interrompendo il thread che lo esegue, e lo elimina dalla coda se non è ancora iniziato
+     * @param job lavoro da annullare
+     * @return {@code true} se il lavoro è stato annullato, {@code false} se era già terminato
+     */
+    public boolean cancel(MiningJob job) {
+        boolean cancelled = job.cancel(true);
+        executor.remove(job);
+        return cancelled;
+    }
+
+    /**
+     * Restituisce il numero di lavori in attesa di un thread libero
+     * @return lavori in coda
+     */
+    public int getQueuedJobs() {
+        return executor.getQueue().size();
+    }
+}
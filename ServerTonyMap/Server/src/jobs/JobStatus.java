@@ -0,0 +1,24 @@
+package src.jobs;
+
+/**
+ * Stato di un {@link MiningJob}, inviato al client come stringa (si veda {@link #name()}).
+ */
+public enum JobStatus {
+    /** In attesa di un thread libero */
+    QUEUED,
+
+    /** In esecuzione */
+    RUNNING,
+
+    /** Terminato, il dendrogramma può essere richiesto */
+    DONE,
+
+    /** Annullato prima del termine */
+    CANCELLED,
+
+    /** Terminato con un errore */
+    FAILED,
+
+    /** Nessun lavoro con l'identificativo indicato appartiene al client */
+    UNKNOWN
+}
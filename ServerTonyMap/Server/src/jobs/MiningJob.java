@@ -0,0 +1,106 @@
+package src.jobs;
+
+import src.clustering.CancellationToken;
+import src.clustering.HierachicalClusterMiner;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clustering eseguito in modo asincrono da {@link JobScheduler}, identificato da un numero univoco
+ * con cui il client ne chiede lo stato, il risultato o l'annullamento.
+ */
+public class MiningJob extends FutureTask<HierachicalClusterMiner> {
+
+    /** Ultimo identificativo assegnato */
+    private static final AtomicLong lastId = new AtomicLong();
+
+    /** Identificativo del lavoro */
+    private final long id;
+
+    /** Indica se il lavoro è stato avviato da un thread */
+    private volatile boolean started;
+
+    /** Richiesta di interruzione del clustering, annullata insieme al lavoro */
+    private final CancellationToken token;
+
+    /**
+     * Crea un lavoro che esegue il clustering indicato
+     * @param token richiesta di interruzione controllata dal clustering, annullata quando viene annullato il lavoro
+     * @param task calcolo del dendrogramma
+     */
+    public MiningJob(CancellationToken token, Callable<HierachicalClusterMiner> task) {
+        super(task);
+        this.token = token;
+        id = lastId.incrementAndGet();
+    }
+
+    /**
+     * Restituisce l'identificativo del lavoro
+     * @return numero univoco tra tutti i lavori del server
+     */
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public void run() {
+        started = true;
+        super.run();
+    }
+
+    /**
+     * Annulla il lavoro; se è in esecuzione, il clustering si interrompe al controllo successivo del token.
+     * @param mayInterruptIfRunning {@code true} per interrompere anche il thread che esegue il lavoro
+     * @return {@code true} se il lavoro è stato annullato
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        token.cancel();
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    /**
+     * Restituisce lo stato attuale del lavoro
+     * @return stato del lavoro
+     */
+    public JobStatus getStatus() {
+        if (isCancelled()) {
+            return JobStatus.CANCELLED;
+        }
+        if (isDone()) {
+            return getError() == null ? JobStatus.DONE : JobStatus.FAILED;
+        }
+        return started ? JobStatus.RUNNING : JobStatus.QUEUED;
+    }
+
+    /**
+     * Restituisce il messaggio dell'errore con cui è terminato il lavoro
+     * @return messaggio dell'errore, null se il lavoro non è terminato o è terminato correttamente
+     */
+    public String getError() {
+        if (!isDone() || isCancelled()) {
+            return null;
+        }
+        try {
+            get();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+        } catch (InterruptedException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Restituisce il dendrogramma calcolato
+     * @return dendrogramma, null se il lavoro non è terminato correttamente
+     */
+    public HierachicalClusterMiner getResult() {
+        return getStatus() == JobStatus.DONE ? resultNow() : null;
+    }
+}
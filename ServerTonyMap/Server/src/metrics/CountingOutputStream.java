@@ -0,0 +1,42 @@
+package src.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream che conta i byte scritti sullo stream sottostante.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+    /** Numero di byte scritti */
+    private volatile long count;
+
+    /**
+     * Crea uno stream che conta i byte scritti su quello indicato
+     * @param out stream sottostante
+     */
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+
+    /**
+     * Restituisce il numero di byte scritti finora
+     * @return numero di byte scritti
+     */
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,176 @@
+package src.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Istogramma di valori interi non negativi, come latenze o dimensioni, registrabili da più thread
+ * senza sincronizzazione.
+ * <p>
+ * Ogni potenza di 2 è suddivisa in 4 intervalli della stessa ampiezza, per cui i percentili sono
+ * restituiti come estremo superiore del loro intervallo, con un errore relativo al più del 25%,
+ * occupando una quantità di memoria fissa qualunque sia il numero di valori registrati.
+ * </p>
+ */
+public class Histogram implements HistogramMBean {
+
+    /** Numero di intervalli in cui è suddivisa ogni potenza di 2 (logaritmo in base 2) */
+    private static final int SUB_BITS = 2;
+
+    /** Numero di intervalli in cui è suddivisa ogni potenza di 2 */
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /** Numero di intervalli necessari a contenere qualunque valore long non negativo */
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    /** Unità di misura dei valori */
+    private final String unit;
+
+    /** Numero di valori registrati in ogni intervallo */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /** Somma dei valori registrati */
+    private final LongAdder total = new LongAdder();
+
+    /** Valore massimo registrato */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Crea un istogramma vuoto
+     * @param unit unità di misura dei valori
+     */
+    public Histogram(String unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Registra un valore; i valori negativi sono considerati pari a 0
+     * @param value valore da registrare
+     */
+    public void record(long value) {
+        value = Math.max(0L, value);
+        buckets.incrementAndGet(bucket(value));
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    @Override
+    public String getUnit() {
+        return unit;
+    }
+
+    @Override
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    @Override
+    public long getTotal() {
+        return total.sum();
+    }
+
+    @Override
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double) getTotal() / count;
+    }
+
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+
+    @Override
+    public long getP50() {
+        return percentile(0.50);
+    }
+
+    @Override
+    public long getP95() {
+        return percentile(0.95);
+    }
+
+    @Override
+    public long getP99() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0L);
+        }
+        total.reset();
+        max.reset();
+    }
+
+    /**
+     * Restituisce il valore sotto il quale ricade la frazione indicata dei valori registrati
+     * @param fraction frazione dei valori, tra 0 e 1
+     * @return estremo superiore dell'intervallo che contiene il percentile, limitato al massimo
+     *         registrato; 0 se non è stato registrato alcun valore
+     */
+    public long percentile(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Restituisce una descrizione sintetica dell'istogramma
+     * @return numero di valori, media e percentili principali
+     */
+    public String toString() {
+        return "n=" + getCount() + " media=" + Math.round(getMean()) + unit + " p50=" + getP50() + unit
+                + " p99=" + getP99() + unit + " max=" + getMax() + unit;
+    }
+
+    /**
+     * Restituisce l'intervallo che contiene un valore
+     * @param value valore non negativo
+     * @return indice dell'intervallo
+     */
+    private static int bucket(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * Restituisce il valore più grande contenuto in un intervallo
+     * @param bucket indice dell'intervallo
+     * @return estremo superiore dell'intervallo
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        long width = 1L << (exponent - SUB_BITS);
+        long lower = (long) (SUB_COUNT + bucket % SUB_COUNT) << (exponent - SUB_BITS);
+        return lower + width - 1;
+    }
+}
@@ -0,0 +1,60 @@
+package src.metrics;
+
+/**
+ * Interfaccia di gestione JMX di un {@link Histogram}.
+ */
+public interface HistogramMBean {
+
+    /**
+     * Restituisce l'unità di misura dei valori
+     * @return unità di misura, ad esempio {@code us} o {@code byte}
+     */
+    String getUnit();
+
+    /**
+     * Restituisce il numero di valori registrati
+     * @return numero di valori
+     */
+    long getCount();
+
+    /**
+     * Restituisce la somma dei valori registrati
+     * @return somma dei valori
+     */
+    long getTotal();
+
+    /**
+     * Restituisce la media dei valori registrati
+     * @return media dei valori, 0 se non ne è stato registrato nessuno
+     */
+    double getMean();
+
+    /**
+     * Restituisce il valore massimo registrato
+     * @return valore massimo
+     */
+    long getMax();
+
+    /**
+     * Restituisce la mediana dei valori registrati
+     * @return mediana, approssimata per eccesso
+     */
+    long getP50();
+
+    /**
+     * Restituisce il 95-esimo percentile dei valori registrati
+     * @return percentile, approssimato per eccesso
+     */
+    long getP95();
+
+    /**
+     * Restituisce il 99-esimo percentile dei valori registrati
+     * @return percentile, approssimato per eccesso
+     */
+    long getP99();
+
+    /**
+     * Azzera i valori registrati
+     */
+    void reset();
+}
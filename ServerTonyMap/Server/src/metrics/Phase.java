@@ -0,0 +1,30 @@
+package src.metrics;
+
+/**
+ * Fasi in cui si articola l'elaborazione di una richiesta, di cui {@link ServerMetrics} misura la durata.
+ */
+public enum Phase {
+    /** Lettura di una tabella dal database */
+    DB_LOAD,
+
+    /** Calcolo della matrice delle distanze tra gli esempi */
+    DISTANCE,
+
+    /**
+     * Costruzione del dendrogramma per fusioni successive, esclusa la matrice delle distanze; per
+     * l'algoritmo SLINK comprende il calcolo delle distanze, che non vengono memorizzate
+     */
+    MERGE,
+
+    /** Conversione del dendrogramma nel testo inviato al client */
+    RENDER,
+
+    /** Scrittura del dendrogramma sul socket del client */
+    SOCKET_WRITE,
+
+    /** Salvataggio di un dendrogramma su file */
+    FILE_SAVE,
+
+    /** Lettura di un dendrogramma da file */
+    FILE_LOAD
+}
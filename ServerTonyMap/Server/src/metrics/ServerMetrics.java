@@ -0,0 +1,234 @@
+package src.metrics;
+
+import src.cache.DataCache;
+import src.cache.ResultCache;
+import src.database.ConnectionPool;
+import src.database.DbAccess;
+import src.jobs.JobScheduler;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metriche del server, esposte tramite JMX dopo la chiamata a {@link #register()}.
+ * <p>
+ * Sono registrati i seguenti MBean, consultabili ad esempio con {@code jconsole}:
+ * </p>
+ * <ul>
+ *     <li>{@code tonymap:type=Server}: sessioni aperte, clustering in corso e in coda, richieste, byte inviati
+ *     e stato del pool di connessioni e delle cache;</li>
+ *     <li>{@code tonymap:type=Phase,name=<fase>}: istogramma delle durate, in microsecondi, di ogni
+ *     {@link Phase};</li>
+ *     <li>{@code tonymap:type=Request,name=BytesSent}: istogramma dei byte inviati per ogni richiesta.</li>
+ * </ul>
+ * <p>
+ * Le metriche sono raccolte anche se non vengono registrate.
+ * </p>
+ */
+public class ServerMetrics implements ServerMetricsMBean {
+
+    /** Dominio dei nomi JMX */
+    static final String DOMAIN = "tonymap";
+
+    /** Metriche condivise dal server */
+    private static final ServerMetrics SHARED = new ServerMetrics();
+
+    /** Durate, in microsecondi, di ogni fase */
+    private final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+
+    /** Byte inviati per ogni richiesta */
+    private final Histogram bytesPerRequest = new Histogram("byte");
+
+    /** Numero di client connessi */
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    /** Numero di clustering in corso */
+    private final AtomicInteger inFlightJobs = new AtomicInteger();
+
+    /** Numero di richieste servite */
+    private final LongAdder requests = new LongAdder();
+
+    /** Byte inviati ai client */
+    private final LongAdder bytesSent = new LongAdder();
+
+    /** Indica se gli MBean sono già stati registrati */
+    private boolean registered;
+
+    /**
+     * Crea un insieme di metriche azzerate
+     */
+    public ServerMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Histogram("us"));
+        }
+    }
+
+    /**
+     * Restituisce le metriche condivise dal server
+     * @return metriche del server
+     */
+    public static ServerMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * Registra gli MBean nel server JMX della piattaforma; le chiamate successive alla prima non hanno effetto.
+     * @throws JMException se la registrazione fallisce
+     */
+    public synchronized void register() throws JMException {
+        if (registered) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, new ObjectName(DOMAIN + ":type=Server"));
+        for (Map.Entry<Phase, Histogram> e : phases.entrySet()) {
+            server.registerMBean(e.getValue(), new ObjectName(DOMAIN + ":type=Phase,name=" + e.getKey()));
+        }
+        server.registerMBean(bytesPerRequest, new ObjectName(DOMAIN + ":type=Request,name=BytesSent"));
+        registered = true;
+    }
+
+    /**
+     * Restituisce l'istogramma delle durate di una fase
+     * @param phase fase
+     * @return istogramma delle durate, in microsecondi
+     */
+    public Histogram phase(Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * Registra la durata di una fase terminata in questo istante
+     * @param phase fase terminata
+     * @param startNanos istante di inizio della fase, ottenuto con {@link System#nanoTime()}
+     */
+    public void record(Phase phase, long startNanos) {
+        recordNanos(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Registra la durata di una fase
+     * @param phase fase
+     * @param nanos durata della fase, in nanosecondi
+     */
+    public void recordNanos(Phase phase, long nanos) {
+        phases.get(phase).record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Registra la connessione di un client
+     */
+    public void sessionOpened() {
+        activeSessions.incrementAndGet();
+    }
+
+    /**
+     * Registra la disconnessione di un client
+     */
+    public void sessionClosed() {
+        activeSessions.decrementAndGet();
+    }
+
+    /**
+     * Registra l'inizio di un clustering
+     */
+    public void jobStarted() {
+        inFlightJobs.incrementAndGet();
+    }
+
+    /**
+     * Registra la fine, anche con errore, di un clustering
+     */
+    public void jobFinished() {
+        inFlightJobs.decrementAndGet();
+    }
+
+    /**
+     * Registra una richiesta servita
+     * @param bytes byte inviati al client per rispondere alla richiesta
+     */
+    public void requestServed(long bytes) {
+        requests.increment();
+        bytesSent.add(bytes);
+        bytesPerRequest.record(bytes);
+    }
+
+    @Override
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    @Override
+    public int getInFlightJobs() {
+        return inFlightJobs.get();
+    }
+
+    @Override
+    public int getQueuedJobs() {
+        return JobScheduler.shared().getQueuedJobs();
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public int getDbPoolActive() {
+        ConnectionPool pool = DbAccess.getSharedPool();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    @Override
+    public int getDbPoolIdle() {
+        ConnectionPool pool = DbAccess.getSharedPool();
+        return pool == null ? 0 : pool.getIdleConnections();
+    }
+
+    @Override
+    public int getDbPoolWaiting() {
+        ConnectionPool pool = DbAccess.getSharedPool();
+        return pool == null ? 0 : pool.getWaitingRequests();
+    }
+
+    @Override
+    public long getDbPoolTimeouts() {
+        ConnectionPool pool = DbAccess.getSharedPool();
+        return pool == null ? 0L : pool.getTimeoutCount();
+    }
+
+    @Override
+    public String getResultCache() {
+        return ResultCache.shared().toString();
+    }
+
+    @Override
+    public String getDataCache() {
+        return DataCache.shared().toString();
+    }
+
+    /**
+     * Restituisce una descrizione delle metriche, con una riga per ogni fase
+     * @return descrizione delle metriche
+     */
+    public String toString() {
+        StringBuilder str = new StringBuilder("sessioni=" + getActiveSessions() + " clustering=" + getInFlightJobs()
+                + " richieste=" + getRequests() + " byte=" + getBytesSent() + "\n");
+        for (Map.Entry<Phase, Histogram> e : phases.entrySet()) {
+            str.append(e.getKey()).append(": ").append(e.getValue()).append("\n");
+        }
+        return str.toString();
+    }
+}
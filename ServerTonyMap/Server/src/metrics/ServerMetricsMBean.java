@@ -0,0 +1,73 @@
+package src.metrics;
+
+/**
+ * Interfaccia di gestione JMX di {@link ServerMetrics}.
+ */
+public interface ServerMetricsMBean {
+
+    /**
+     * Restituisce il numero di client connessi
+     * @return numero di sessioni aperte
+     */
+    int getActiveSessions();
+
+    /**
+     * Restituisce il numero di clustering in corso
+     * @return numero di dendrogrammi in costruzione
+     */
+    int getInFlightJobs();
+
+    /**
+     * Restituisce il numero di clustering asincroni in attesa di un thread libero
+     * @return numero di lavori in coda
+     */
+    int getQueuedJobs();
+
+    /**
+     * Restituisce il numero di richieste servite dall'avvio
+     * @return numero di richieste
+     */
+    long getRequests();
+
+    /**
+     * Restituisce il numero di byte inviati ai client dall'avvio
+     * @return numero di byte inviati
+     */
+    long getBytesSent();
+
+    /**
+     * Restituisce il numero di connessioni al database in uso
+     * @return connessioni in uso, 0 se il pool non è ancora stato creato
+     */
+    int getDbPoolActive();
+
+    /**
+     * Restituisce il numero di connessioni al database inattive nel pool
+     * @return connessioni inattive
+     */
+    int getDbPoolIdle();
+
+    /**
+     * Restituisce il numero di richieste in attesa di una connessione al database
+     * @return richieste in attesa
+     */
+    int getDbPoolWaiting();
+
+    /**
+     * Restituisce il numero di richieste di connessione scadute senza ottenere una connessione
+     * @return richieste scadute
+     */
+    long getDbPoolTimeouts();
+
+    /**
+     * Restituisce lo stato della cache dei risultati
+     * @return descrizione della cache dei dendrogrammi
+     */
+    String getResultCache();
+
+    /**
+     * Restituisce lo stato della cache dei dataset
+     * @return descrizione della cache dei dataset
+     */
+    String getDataCache();
+}
@@ -0,0 +1,89 @@
+package src;
+
+import src.clustering.CancellationToken;
+import src.exceptions.MiningCancelledException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thread del sistema operativo che eseguono i clustering richiesti con "DataBase" e "DataBaseStream".
+ * <p>
+ * I client sono gestiti di default da thread virtuali, che la JVM non alterna tra loro finché non si
+ * bloccano: un clustering, che impegna la CPU senza bloccarsi, eseguito su un thread virtuale ne
+ * occuperebbe il carrier per tutta la durata, rallentando le altre sessioni. Per questo il clustering
+ * viene eseguito da uno dei {@code tonymap.mining.threads} thread (di default il numero di processori),
+ * mentre il thread virtuale del client ne attende il risultato senza occupare il carrier.
+ * </p>
+ * <p>
+ * A differenza di {@link src.jobs.JobScheduler}, la coda non ha limite: ogni client attende al più un
+ * clustering, per cui i clustering in attesa non superano i client connessi, e nessuna richiesta viene
+ * rifiutata. Un thread che non è virtuale, come un client in modalità {@code platform} o un lavoro di
+ * {@link src.jobs.JobScheduler}, esegue direttamente il clustering.
+ * </p>
+ */
+final class miningPool {
+
+    /**
+     * Numero di thread che eseguono i clustering.
+     */
+    static final int THREADS = Integer.getInteger("tonymap.mining.threads", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Intervallo, in millisecondi, con cui chi attende un clustering controlla se va interrotto.
+     */
+    static final long WAIT_MILLIS = 50;
+
+    /** Thread che eseguono i clustering */
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 0L,
+            TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            Thread.ofPlatform().name("client-mining-", 0).daemon(true).factory());
+
+    private miningPool() {
+    }
+
+    /**
+     * Esegue un clustering su uno dei thread del sistema operativo e ne attende il risultato.
+     * <p>
+     * Se il token viene annullato mentre il clustering è ancora in coda, il clustering viene eliminato dalla
+     * coda, perché nessuno controllerebbe il token; una volta iniziato è il clustering stesso a interrompersi.
+     * </p>
+     * @param token richiesta di interruzione del clustering, annullata anche se il thread in attesa viene interrotto
+     * @param task clustering da eseguire
+     * @param <T> tipo del risultato
+     * @return risultato del clustering
+     * @throws ExecutionException se il clustering solleva un'eccezione, che ne è la causa
+     * @throws MiningCancelledException se il token viene annullato prima dell'inizio del clustering, oppure se il
+     * thread in attesa viene interrotto
+     */
+    static <T> T compute(CancellationToken token, Callable<T> task) throws ExecutionException {
+        FutureTask<T> future = new FutureTask<>(task);
+        if (Thread.currentThread().isVirtual()) {
+            EXECUTOR.execute(future);
+        } else {
+            future.run();
+        }
+        try {
+            while (true) {
+                try {
+                    return future.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (token.isCancelled() && EXECUTOR.remove(future)) {
+                        throw new MiningCancelledException(token.getReason());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            token.cancel();
+            future.cancel(true);
+            EXECUTOR.remove(future);
+            Thread.currentThread().interrupt();
+            throw new MiningCancelledException(token.getReason());
+        }
+    }
+}
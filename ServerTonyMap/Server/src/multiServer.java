@@ -1,13 +1,36 @@
 package src;
 
+import src.metrics.ServerMetrics;
+
+import javax.management.JMException;
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * La classe {@code multiServer} rappresenta un server multi-threaded che accetta connessioni da parte dei client.
  * <p>
- * Il server utilizza una porta specifica (8080 di default) e crea un thread dedicato per ogni client connesso
- * utilizzando la classe {@link serverOneClient}.
+ * Il server utilizza una porta specifica (8080 di default) e affida ogni client connesso a un
+ * {@link serverOneClient}, eseguito da un {@link ExecutorService}.
+ * </p>
+ * <p>
+ * La proprietà di sistema {@code tonymap.server.threads} sceglie il tipo di thread che gestisce i client:
+ * con {@code virtual} (valore di default) ogni client ha un thread virtuale, per cui le attese sul socket
+ * e sul database non occupano thread del sistema operativo; con {@code platform} ogni client ha un
+ * thread del sistema operativo, come nelle versioni precedenti. In entrambi i casi i clustering, che
+ * impegnano la CPU, sono eseguiti da thread del sistema operativo (si vedano {@link miningPool} e
+ * {@link src.jobs.JobScheduler}).
+ * </p>
+ * <p>
+ * La proprietà di sistema {@code tonymap.server.frontend} sceglie come attendere le richieste: con
+ * {@code blocking} (valore di default) ogni client resta associato al proprio thread per tutta la sessione;
+ * con {@code nio} i client inattivi sono gestiti da un unico selettore (si veda {@link selectorServer}) e
+ * occupano un thread solo mentre viene eseguita una loro richiesta.
+ * </p>
+ * <p>
+ * All'avvio vengono registrate le metriche JMX del server (si veda {@link ServerMetrics}).
  * </p>
  */
 public class multiServer {
@@ -17,6 +40,16 @@ public class multiServer {
      */
     static final int PORT = 8080;
 
+    /**
+     * Tipo di thread utilizzato per gestire i client, {@code virtual} o {@code platform}.
+     */
+    static final String THREADS = System.getProperty("tonymap.server.threads", "virtual");
+
+    /**
+     * Modalità di attesa delle richieste dei client, {@code blocking} o {@code nio}.
+     */
+    static final String FRONTEND = System.getProperty("tonymap.server.frontend", "blocking");
+
     /**
      * Metodo principale che avvia il server.
      *
@@ -24,22 +57,50 @@ public class multiServer {
      * @throws IOException Se si verifica un errore durante l'avvio del server o la gestione delle connessioni.
      */
     public static void main(String[] args) throws IOException {
+            try {
+                ServerMetrics.shared().register();
+            } catch (JMException e) {
+                System.out.println("Metriche JMX non disponibili: " + e.getMessage());
+            }
+            ExecutorService clients = newClientExecutor();
+            if (FRONTEND.equalsIgnoreCase("nio")) {
+                System.out.println("Server Avviato (thread " + THREADS + ", selettore NIO)");
+                try {
+                    new selectorServer(clients).serve(PORT);
+                } finally {
+                    clients.shutdown();
+                }
+                return;
+            }
             ServerSocket s = new ServerSocket(PORT);
-            System.out.println("Server Avviato");
+            System.out.println("Server Avviato (thread " + THREADS + ")");
             try {
                 while (true) {
                     // Si blocca finché non si verifica una connessione:
                     Socket socket = s.accept();
                     try {
-                        new serverOneClient(socket); // Gestisce il client connesso in un thread separato
-                    } catch (IOException e) {
+                        clients.execute(new serverOneClient(socket)); // Gestisce il client connesso in un thread separato
+                    } catch (RejectedExecutionException e) {
                         // Se fallisce, chiude il socket,
                         // altrimenti il thread gestirà la chiusura:
                         socket.close();
                     }
                 }
             } finally {
+                clients.shutdown();
                 s.close(); // Chiude il ServerSocket
             }
     }
+
+    /**
+     * Crea l'executor che gestisce i client secondo la proprietà {@code tonymap.server.threads}.
+     *
+     * @return Executor che avvia un nuovo thread, virtuale o del sistema operativo, per ogni client.
+     */
+    static ExecutorService newClientExecutor() {
+        if (THREADS.equalsIgnoreCase("platform")) {
+            return Executors.newCachedThreadPool();
+        }
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("client-", 0).factory());
+    }
 }
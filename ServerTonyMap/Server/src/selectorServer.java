@@ -0,0 +1,199 @@
+package src;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import src.exceptions.ClientDisconnectedException;
+
+/**
+ * Front end non bloccante di {@link multiServer}, attivato con la proprietà di sistema
+ * {@code tonymap.server.frontend=nio}.
+ * <p>
+ * Un unico thread attende, tramite un {@link Selector}, che i client inviino una nuova richiesta: i client
+ * fermi alla home non occupano quindi alcun thread. Quando un client invia una richiesta, il suo canale
+ * viene tolto dal selettore, riportato in modalità bloccante e affidato a un executor, che esegue la
+ * richiesta con {@link serverOneClient#serveCommand()}; al termine il canale torna non bloccante e viene
+ * registrato di nuovo sul selettore.
+ * </p>
+ * <p>
+ * Le richieste sono oggetti serializzati, per cui la loro delimitazione è affidata
+ * all'ObjectInputStream del client: il selettore segnala solo l'arrivo del primo byte di una richiesta,
+ * che viene poi letta per intero dal thread dell'executor.
+ * </p>
+ */
+class selectorServer {
+
+    /**
+     * Selettore su cui sono registrati il canale di ascolto e i client in attesa di una richiesta.
+     */
+    private final Selector selector;
+
+    /**
+     * Executor che esegue le richieste dei client.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * Client che hanno terminato una richiesta e devono essere registrati di nuovo sul selettore.
+     */
+    private final Queue<Session> idle = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Associazione tra il canale di un client e il gestore della sua connessione.
+     *
+     * @param channel Canale del client.
+     * @param client Gestore della connessione con il client.
+     */
+    private record Session(SocketChannel channel, serverOneClient client) {
+    }
+
+    /**
+     * Crea il front end non bloccante.
+     *
+     * @param workers Executor che esegue le richieste dei client.
+     * @throws IOException Se non è possibile aprire il selettore.
+     */
+    selectorServer(ExecutorService workers) throws IOException {
+        this.selector = Selector.open();
+        this.workers = workers;
+    }
+
+    /**
+     * Accetta le connessioni sulla porta indicata e smista le richieste dei client finché il server è attivo.
+     *
+     * @param port Porta su cui il server è in ascolto.
+     * @throws IOException Se si verifica un errore sul canale di ascolto o sul selettore.
+     */
+    void serve(int port) throws IOException {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+
+            while (true) {
+                if (selector.selectedKeys().isEmpty()) {
+                    selector.select();
+                }
+                registerIdle();
+
+                List<Session> ready = new ArrayList<>();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(server);
+                    } else if (key.isReadable()) {
+                        key.cancel();
+                        ready.add((Session) key.attachment());
+                    }
+                }
+
+                if (!ready.isEmpty()) {
+                    // rimuove dal selettore le chiavi annullate, così che i canali possano tornare bloccanti
+                    selector.selectNow();
+                    for (Session session : ready) {
+                        dispatch(session);
+                    }
+                }
+            }
+        } finally {
+            selector.close();
+        }
+    }
+
+    /**
+     * Accetta un nuovo client e lo registra sul selettore.
+     *
+     * @param server Canale di ascolto.
+     */
+    private void accept(ServerSocketChannel server) {
+        SocketChannel channel = null;
+        try {
+            channel = server.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, new Session(channel, new serverOneClient(channel.socket())));
+            }
+        } catch (IOException e) {
+            System.out.println("Errore durante l'accettazione di un client: " + e.getMessage());
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * Registra di nuovo sul selettore i client che hanno terminato una richiesta.
+     */
+    private void registerIdle() {
+        Session session;
+        while ((session = idle.poll()) != null) {
+            try {
+                session.channel().configureBlocking(false);
+                session.channel().register(selector, SelectionKey.OP_READ, session);
+            } catch (IOException e) {
+                session.client().closeConnection();
+            }
+        }
+    }
+
+    /**
+     * Affida all'executor la richiesta di un client. Alla prima richiesta viene solo aperta la connessione,
+     * in modo che il client non occupi un thread in attesa della prima modalità d'uso.
+     *
+     * @param session Client che ha inviato una richiesta.
+     */
+    private void dispatch(Session session) {
+        try {
+            workers.execute(() -> {
+                serverOneClient client = session.client();
+                try {
+                    session.channel().configureBlocking(true);
+                    if (client.isOpen()) {
+                        client.serveCommand();
+                    } else {
+                        client.open();
+                    }
+                    idle.add(session);
+                    selector.wakeup();
+                } catch (ClientDisconnectedException e) {
+                    System.out.println(e.getMessage());
+                    client.closeConnection();
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Errore nella gestione del client: " + e.getMessage());
+                    client.closeConnection();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            session.client().closeConnection();
+        }
+    }
+
+    /**
+     * Chiude un canale ignorando eventuali errori.
+     *
+     * @param channel Canale da chiudere, può essere null.
+     */
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // il canale è comunque inutilizzabile
+            }
+        }
+    }
+}
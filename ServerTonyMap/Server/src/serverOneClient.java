@@ -4,75 +4,162 @@ import java.io.*;
 import java.net.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
+import src.cache.DataCache;
+import src.cache.ResultCache;
+import src.clustering.CancellationToken;
 import src.clustering.HierachicalClusterMiner;
 import src.data.Data;
 import src.database.DbAccess;
 import src.database.TableData;
 import src.distance.*;
 import src.exceptions.*;
+import src.jobs.JobScheduler;
+import src.jobs.JobStatus;
+import src.jobs.MiningJob;
+import src.metrics.CountingOutputStream;
+import src.metrics.Phase;
+import src.metrics.ServerMetrics;
 
 /**
  * La classe serverOneClient gestisce una connessione con un client e consente
  * l'esecuzione di operazioni di clustering gerarchico sui dati ricevuti o caricati
- * da un database o un file. La classe estende Thread per permettere l'esecuzione
- * asincrona della comunicazione con il client.
+ * da un database o un file. La classe implementa Runnable ed è eseguita da un executor
+ * (si veda {@link multiServer}) per permettere l'esecuzione asincrona della comunicazione con il client.
  *
  * Gestisce diverse modalità di interazione:
  * - "DataBase": interazione con un database per recuperare dati da una tabella,
  *   eseguire il clustering e inviare i risultati al client.
  * - "File": carica un dendrogramma da file e lo invia al client.
+ * - "DataBaseStream" e "FileStream": come le precedenti, ma il dendrogramma viene inviato
+ *   un livello alla volta, in blocchi di al più {@link #CHUNK_SIZE} caratteri seguiti da null.
+ * - "Submit": come "DataBase", ma il clustering viene affidato a {@link JobScheduler} e al client
+ *   viene inviato subito l'identificativo (Long) del lavoro, oppure un messaggio (String) se il server
+ *   è troppo carico per accettarlo.
+ * - "Poll": riceve l'identificativo di un lavoro e ne invia lo stato ({@link JobStatus}, come String).
+ * - "Fetch" e "FetchStream": riceve l'identificativo di un lavoro e ne invia lo stato; se il lavoro è
+ *   terminato segue il dendrogramma, come in "DataBase" e "DataBaseStream", se è fallito il messaggio d'errore.
+ * - "Cancel": riceve l'identificativo di un lavoro, lo annulla e invia true se era ancora in corso.
+ *
+ * I lavori appartengono al client che li ha avviati e quelli non ancora ritirati vengono annullati
+ * alla chiusura della connessione. I clustering di "DataBase" non passano dalla coda limitata di
+ * {@link JobScheduler}, per cui non vengono mai rifiutati: sono eseguiti dai thread di {@link miningPool},
+ * mentre il thread del client ne attende il risultato.
+ *
+ * Ogni clustering può durare al più {@link #MINING_TIMEOUT_MILLIS} millisecondi: allo scadere viene interrotto
+ * e al client viene inviato, al posto del dendrogramma, il messaggio d'errore con il numero di livelli completati;
+ * i livelli già calcolati sono scartati, per cui un dendrogramma incompleto non viene mai inviato, salvato o
+ * memorizzato in {@link ResultCache}. Un clustering eseguito in "DataBase" viene interrotto anche se il client
+ * si disconnette mentre attende il risultato.
  *
  * La comunicazione avviene tramite flussi di input e output serializzati.
  */
-public class serverOneClient extends Thread {
+public class serverOneClient implements Runnable {
+    /**
+     * Numero massimo di caratteri di ogni blocco inviato nelle modalità in streaming.
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Numero massimo di tentativi di caricamento di una tabella.
+     */
+    static final int LOAD_ATTEMPTS = 3;
+
+    /**
+     * Attesa, in millisecondi, prima del secondo tentativo di caricamento; raddoppia a ogni tentativo successivo.
+     */
+    static final long LOAD_RETRY_MILLIS = 200;
+
+    /**
+     * Durata massima, in millisecondi, di un clustering, impostabile con la proprietà di sistema
+     * {@code tonymap.mining.timeoutMillis}; 0 indica nessun limite.
+     */
+    static final long MINING_TIMEOUT_MILLIS = Long.getLong("tonymap.mining.timeoutMillis", 0);
+
     private Socket socket;
+
+    /**
+     * Stream di input del socket, a cui {@link disconnectWatch} restituisce i byte letti durante il clustering.
+     */
+    private PushbackInputStream input;
     private ObjectInputStream in;
     private ObjectOutputStream out;
 
     /**
-     * Costruttore della classe serverOneClient che inizializza il socket,
-     * l'ObjectInputStream e l'ObjectOutputStream.
-     * Avvia il thread per la gestione della connessione con il client.
+     * Conta i byte inviati al client, per misurare quelli inviati in risposta a ogni richiesta.
+     */
+    private CountingOutputStream sent;
+
+    /**
+     * Indica se la sessione è conteggiata tra quelle aperte in {@link ServerMetrics}.
+     */
+    private boolean sessionCounted;
+
+    /**
+     * Lavori avviati dal client e non ancora ritirati o annullati, per identificativo.
+     */
+    private final Map<Long, MiningJob> jobs = new LinkedHashMap<>();
+
+    /**
+     * Costruttore della classe serverOneClient che memorizza il socket.
+     * L'ObjectInputStream e l'ObjectOutputStream sono creati da {@link #run()}, in modo che
+     * l'attesa dell'intestazione inviata dal client non blocchi il thread che accetta le connessioni.
      *
      * @param s Il socket per la connessione con il client
-     * @throws IOException Se si verifica un errore di I/O durante l'inizializzazione
      */
-    public serverOneClient(Socket s) throws IOException {
+    public serverOneClient(Socket s) {
         socket = s;
-        in = new ObjectInputStream(socket.getInputStream());
-        out = new ObjectOutputStream(socket.getOutputStream());
+    }
 
-        // se una qualsiasi delle chiamate precedenti solleva una
-        // eccezione, il processo chiamante è responsabile della
-        // chiusura del socket. Altrimenti lo chiuderà il thread
-        start(); // Chiama run()
+    /**
+     * Crea l'ObjectInputStream e l'ObjectOutputStream sul socket.
+     *
+     * @throws IOException Se si verifica un errore di I/O durante l'inizializzazione
+     */
+    private void openStreams() throws IOException {
+        input = new PushbackInputStream(socket.getInputStream());
+        in = new ObjectInputStream(input);
+        sent = new CountingOutputStream(socket.getOutputStream());
+        out = new ObjectOutputStream(sent);
+        ServerMetrics.shared().sessionOpened();
+        sessionCounted = true;
     }
 
     /**
-     * Riceve il nome della tabella del DB dal client e crea un oggetto Data.
-     * Ripete il tentativo finché non carica correttamente i dati.
+     * Ottiene dalla cache condivisa il dataset della tabella selezionata dal client, leggendolo dal DB se necessario.
+     * Ripete il tentativo al più {@link #LOAD_ATTEMPTS} volte, attendendo tra un tentativo e l'altro.
      *
      * @param tableselected Il nome della tabella selezionata dal client
-     * @return Un oggetto Data contenente i dati della tabella
-     * @throws IOException Se si verifica un errore di I/O
-     * @throws ClassNotFoundException Se non viene trovata la classe Data
+     * @param fingerprint L'impronta attuale della tabella, oppure null se non è nota
+     * @return L'utilizzo del dataset, da chiudere al termine
+     * @throws NoDataException Se dopo tutti i tentativi non è stato possibile caricare i dati
      */
-    private Data receiveDataClient(String tableselected) throws IOException, ClassNotFoundException {
-        Data datas = null;
-        boolean loadedData = false;
+    private DataCache.Lease receiveDataClient(String tableselected, String fingerprint) throws NoDataException {
+        NoDataException last = null;
 
-        do {
+        for (int attempt = 1; attempt <= LOAD_ATTEMPTS; attempt++) {
             try {
-                datas = new Data(tableselected);
-                loadedData = true;
+                return DataCache.shared().acquire(tableselected, fingerprint);
             } catch (NoDataException e) {
-                System.out.println(e.getMessage());
+                System.out.println(e.getMessage() + " (tentativo " + attempt + " di " + LOAD_ATTEMPTS + ")");
+                last = e;
+            }
+            if (attempt < LOAD_ATTEMPTS) {
+                try {
+                    Thread.sleep(LOAD_RETRY_MILLIS << (attempt - 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
             }
-        } while (!loadedData);
-        return datas;
+        }
+        throw last;
     }
 
     /**
@@ -82,11 +169,76 @@ public class serverOneClient extends Thread {
      * @throws IOException Se si verifica un errore di I/O
      * @throws ClassNotFoundException Se non viene trovata la classe HierachicalClusterMiner
      */
-    private void loadDedrogramFromFileOnServer(String filename) throws IOException, ClassNotFoundException, FileNotFoundException {
+    private void loadDedrogramFromFileOnServer(String filename, boolean streaming) throws IOException, ClassNotFoundException, FileNotFoundException {
         System.out.println("Ricevuto: " + filename);
 
         HierachicalClusterMiner hcm = HierachicalClusterMiner.loadHierachicalClusterMiner(filename);
-        out.writeObject(hcm.toString());
+        sendDendrogram(hcm, streaming);
+    }
+
+    /**
+     * Invia il dendrogramma al client.
+     * <p>
+     * Se streaming è false il dendrogramma viene inviato come un'unica stringa. Altrimenti i livelli
+     * sono inviati man mano che vengono ricostruiti, in stringhe di al più {@link #CHUNK_SIZE} caratteri,
+     * seguite da null per indicare la fine del dendrogramma. Dopo ogni blocco lo stream viene svuotato e
+     * azzerato, in modo che il client riceva subito i primi livelli e che l'ObjectOutputStream non
+     * conservi i riferimenti alle stringhe già inviate.
+     *
+     * @param hcm Il dendrogramma da inviare
+     * @param streaming true per inviare il dendrogramma a blocchi
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    private void sendDendrogram(HierachicalClusterMiner hcm, boolean streaming) throws IOException {
+        ServerMetrics metrics = ServerMetrics.shared();
+        long start = System.nanoTime();
+        if (!streaming) {
+            String dendrogram = hcm.toString();
+            metrics.record(Phase.RENDER, start);
+            start = System.nanoTime();
+            out.writeObject(dendrogram);
+            metrics.record(Phase.SOCKET_WRITE, start);
+            return;
+        }
+
+        // la conversione e l'invio dei livelli si alternano: si sommano le durate di ciascuna fase
+        long renderNanos = 0;
+        long writeNanos = 0;
+        try {
+            StringBuilder chunk = new StringBuilder(CHUNK_SIZE);
+            for (int level = 0; level < hcm.getDepth(); level++) {
+                chunk.append(hcm.toString(level));
+                long rendered = System.nanoTime();
+                renderNanos += rendered - start;
+                while (chunk.length() >= CHUNK_SIZE) {
+                    sendChunk(chunk.substring(0, CHUNK_SIZE));
+                    chunk.delete(0, CHUNK_SIZE);
+                }
+                start = System.nanoTime();
+                writeNanos += start - rendered;
+            }
+            if (chunk.length() > 0) {
+                sendChunk(chunk.toString());
+            }
+            out.writeObject(null);
+            out.flush();
+            writeNanos += System.nanoTime() - start;
+        } finally {
+            metrics.recordNanos(Phase.RENDER, renderNanos);
+            metrics.recordNanos(Phase.SOCKET_WRITE, writeNanos);
+        }
+    }
+
+    /**
+     * Invia un blocco del dendrogramma e lo rende subito disponibile al client.
+     *
+     * @param chunk Il blocco da inviare
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    private void sendChunk(String chunk) throws IOException {
+        out.writeObject(chunk);
+        out.flush();
+        out.reset();
     }
 
     /**
@@ -95,18 +247,27 @@ public class serverOneClient extends Thread {
      * @param data I dati da clusterizzare
      * @param depth La profondità del clustering
      * @param modDistance Il tipo di distanza da utilizzare per il clustering
+     * @param token Richiesta di interruzione del clustering
      * @return Un oggetto HierachicalClusterMiner che rappresenta il dendrogramma risultante
      * @throws IOException Se si verifica un errore di I/O
      * @throws ClassNotFoundException Se non viene trovata la classe richiesta
+     * @throws NoDataException Se il dataset non contiene esempi
+     * @throws MiningCancelledException Se il clustering viene interrotto senza livelli utilizzabili
      */
-    private HierachicalClusterMiner mineDendrogram(Data data, int depth, int modDistance) throws IOException, ClassNotFoundException {
+    private HierachicalClusterMiner mineDendrogram(Data data, int depth, int modDistance, CancellationToken token)
+            throws IOException, ClassNotFoundException, NoDataException {
         HierachicalClusterMiner hcm = new HierachicalClusterMiner(depth);
-        if (modDistance == 1) {
-            ClusterDistance distance = new SingleLinkDistance();
-            hcm.mine(data, distance);
-        } else if (modDistance == 2) {
-            ClusterDistance distance = new AverageLinkDistance();
-            hcm.mine(data, distance);
+        ServerMetrics.shared().jobStarted();
+        try {
+            if (modDistance == 1) {
+                ClusterDistance distance = new SingleLinkDistance();
+                hcm.mine(data, distance, token);
+            } else if (modDistance == 2) {
+                ClusterDistance distance = new AverageLinkDistance();
+                hcm.mine(data, distance, token);
+            }
+        } finally {
+            ServerMetrics.shared().jobFinished();
         }
         return hcm;
     }
@@ -157,6 +318,8 @@ public class serverOneClient extends Thread {
             // Usa un stream per raccogliere i nomi dei file nella lista
             return Files.list(directory.toPath())
                     .map(path -> path.getFileName().toString())
+                    // i file che iniziano con un punto sono salvataggi ancora in corso
+                    .filter(name -> !name.startsWith("."))
                     .collect(Collectors.toList());
         } else {
             return List.of(); // Restituisce una lista vuota se il percorso non è valido o non è una directory
@@ -164,41 +327,90 @@ public class serverOneClient extends Thread {
     }
 
     /**
-     * Eseguito dal thread al momento dell'invocazione di .start(), gestisce la comunicazione con il client per ricevere le modalità d'uso
+     * Eseguito dall'executor a cui è affidato il client, gestisce la comunicazione con il client per ricevere le modalità d'uso
      * e indirizzare l'utente alla modalità corretta (Database o File).
      */
     public void run() {
-        String mode;
         try{
+        try {
+            openStreams();
+        } catch (IOException e) {
+            System.out.println("Errore durante l'apertura della connessione: " + e.getMessage());
+            return;
+        }
         do {
-            try {
-                System.out.println("aspetto la modalità d'uso del server dal client...");
-                mode = (String) in.readObject();
-                System.out.println("ricevuto : " + mode);
-                if(mode.equals("Close")){
-                    throw new ClientDisconnectedException("Il Client si è disconnesso");
-                }
-            } catch (IOException | ClassNotFoundException e) {
-                throw new RuntimeException(e);
+            serveCommand();
+        } while (true);
+        }catch (ClientDisconnectedException e){
+            System.out.println(e.getMessage());
+        }finally{closeConnection();}
+    }
+
+    /**
+     * Indica se l'ObjectInputStream e l'ObjectOutputStream sono già stati creati.
+     *
+     * @return true se la connessione con il client è stata aperta
+     */
+    boolean isOpen() {
+        return in != null;
+    }
+
+    /**
+     * Apre la connessione con il client, se non è già aperta.
+     *
+     * @throws IOException Se si verifica un errore di I/O durante l'inizializzazione
+     */
+    void open() throws IOException {
+        if (!isOpen()) {
+            openStreams();
+        }
+    }
+
+    /**
+     * Riceve una modalità d'uso dal client e la esegue fino al ritorno alla home.
+     * Utilizzato da {@link #run()} e da {@link selectorServer}, che lo invoca solo quando il client ha
+     * inviato una nuova richiesta.
+     *
+     * @throws ClientDisconnectedException Se il client si disconnette
+     */
+    void serveCommand() throws ClientDisconnectedException {
+        String mode;
+        try {
+            System.out.println("aspetto la modalità d'uso del server dal client...");
+            mode = (String) in.readObject();
+            System.out.println("ricevuto : " + mode);
+            if(mode.equals("Close")){
+                throw new ClientDisconnectedException("Il Client si è disconnesso");
             }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
 
-            if (mode.equals("DataBase")) {
+        long sentBefore = sent.getCount();
+        try {
+            if (mode.equals("DataBase") || mode.equals("DataBaseStream")) {
                 try {
-                    dbMode();
+                    dbMode(mode.equals("DataBaseStream"));
                 } catch (IOException | NoDataException | ClassNotFoundException e) {
                     throw new RuntimeException(e);
                 }
-            } else if (mode.equals("File")) {
+            } else if (mode.equals("File") || mode.equals("FileStream")) {
                 try {
-                    fileMode();
+                    fileMode(mode.equals("FileStream"));
                 }catch (FileNotFoundException e){
                     System.out.println(e.getMessage());
                 }
+            } else if (mode.equals("Submit") || mode.equals("Poll") || mode.equals("Fetch")
+                    || mode.equals("FetchStream") || mode.equals("Cancel")) {
+                try {
+                    jobMode(mode);
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new RuntimeException(e);
+                }
             }
-        } while (true);
-        }catch (ClientDisconnectedException e){
-            System.out.println(e.getMessage());
-        }finally{closeConnection();}
+        } finally {
+            ServerMetrics.shared().requestServed(sent.getCount() - sentBefore);
+        }
     }
 
     /**
@@ -209,6 +421,18 @@ public class serverOneClient extends Thread {
      * @throws NoDataException Se i dati non sono disponibili
      */
     public void dbMode() throws IOException, ClassNotFoundException, NoDataException, ClientDisconnectedException {
+        dbMode(false);
+    }
+
+    /**
+     * Gestisce la modalità di interazione con il client per l'accesso e la gestione dei dati nel database.
+     *
+     * @param streaming true per inviare il dendrogramma a blocchi
+     * @throws IOException Se si verifica un errore di I/O
+     * @throws ClassNotFoundException Se non viene trovata la classe richiesta
+     * @throws NoDataException Se i dati non sono disponibili
+     */
+    public void dbMode(boolean streaming) throws IOException, ClassNotFoundException, NoDataException, ClientDisconnectedException {
         // invio la lista delle tabelle nel db al client
         displayTables();
         // ricevo il nome della tabella selezionata dal client
@@ -230,13 +454,125 @@ public class serverOneClient extends Thread {
         int linkMode = (int) in.readObject();
         System.out.println("ricevuto : " + linkMode);
 
-        // creo l'oggetto data da clusterizzare
-        Data data = new Data(tableName);
-        // clusterizzo il data scelto da client
-        HierachicalClusterMiner temporaneo = mineDendrogram(data, profondita, linkMode);
+        HierachicalClusterMiner temporaneo = null;
+        String error = null;
+        CancellationToken token = CancellationToken.withTimeout(MINING_TIMEOUT_MILLIS);
+        try (disconnectWatch watch = new disconnectWatch(socket, input, token)) {
+            try {
+                temporaneo = computeDendrogram(tableName, profondita, linkMode, token);
+            } catch (MiningCancelledException e) {
+                if (watch.isDisconnected()) {
+                    throw new ClientDisconnectedException("Client disconnesso durante il clustering");
+                }
+                System.out.println("clustering interrotto: " + e.getMessage());
+                error = e.getMessage();
+            } catch (NoDataException e) {
+                // la tabella non è stata letta: il client riceve il messaggio e la sessione prosegue
+                System.out.println("clustering non eseguito: " + e.getMessage());
+                error = e.getMessage();
+            }
+        }
+        // la risposta va letta solo dopo la chiusura del controllo, che legge anch'esso dal socket
+        if (error != null) {
+            sendError(error, streaming);
+            return;
+        }
 
         // invio il risultato al client
-        out.writeObject(temporaneo.toString());
+        sendAndSave(temporaneo, streaming);
+    }
+
+    /**
+     * Invia al client, al posto del dendrogramma, il messaggio di un clustering interrotto o non eseguito e ne
+     * riceve la risposta alla richiesta di salvataggio, ignorandola perché non c'è nulla da salvare.
+     *
+     * @param message Il messaggio da inviare
+     * @param streaming true se il client attende il dendrogramma a blocchi
+     * @throws IOException Se si verifica un errore di I/O
+     * @throws ClassNotFoundException Se non viene trovata la classe richiesta
+     * @throws ClientDisconnectedException Se il client si disconnette
+     */
+    private void sendError(String message, boolean streaming)
+            throws IOException, ClassNotFoundException, ClientDisconnectedException {
+        out.writeObject(message);
+        if (streaming) {
+            out.writeObject(null);
+        }
+        out.flush();
+        System.out.println("aspetto messaggio salvataggio...");
+        String save = (String) in.readObject();
+        System.out.println("ricevuto : " + save);
+        if (save.equals("salva")) {
+            String filename = (String) in.readObject();
+            System.out.println("salvataggio di " + filename + " ignorato: nessun dendrogramma");
+        } else if (save.equals("Close")) {
+            throw new ClientDisconnectedException("Client disconnesso in fase DB");
+        }
+    }
+
+    /**
+     * Calcola il dendrogramma di una tabella, riutilizzando se possibile un risultato già calcolato
+     * per la stessa tabella, non modificata, con gli stessi parametri.
+     * <p>
+     * Un dendrogramma rimasto incompleto perché il clustering è stato interrotto viene scartato: non è
+     * memorizzato nella cache né salvato, e il client riceve al suo posto il messaggio dell'interruzione.
+     * </p>
+     *
+     * @param tableName Il nome della tabella
+     * @param profondita La profondità del dendrogramma
+     * @param linkMode Il tipo di distanza da utilizzare per il clustering
+     * @param token Richiesta di interruzione del clustering
+     * @return Il dendrogramma calcolato o riutilizzato, con tutti i livelli richiesti
+     * @throws IOException Se si verifica un errore di I/O
+     * @throws ClassNotFoundException Se non viene trovata la classe richiesta
+     * @throws NoDataException Se i dati non sono disponibili
+     * @throws MiningCancelledException Se il clustering viene interrotto, anche dopo aver completato alcuni livelli
+     */
+    private HierachicalClusterMiner computeDendrogram(String tableName, int profondita, int linkMode, CancellationToken token)
+            throws IOException, ClassNotFoundException, NoDataException {
+        // se la tabella non è cambiata riutilizzo un risultato già calcolato
+        String fingerprint = new TableData(new DbAccess()).getFingerprint(tableName);
+        HierachicalClusterMiner temporaneo = ResultCache.shared().get(tableName, profondita, linkMode, fingerprint);
+        if (temporaneo == null) {
+            // ottengo l'oggetto data da clusterizzare, condiviso con gli altri client
+            try (DataCache.Lease data = receiveDataClient(tableName, fingerprint)) {
+                // clusterizzo il data scelto da client su un thread di miningPool, non sul thread virtuale del client
+                Data dataset = data.getData();
+                try {
+                    temporaneo = miningPool.compute(token, () -> mineDendrogram(dataset, profondita, linkMode, token));
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof NoDataException) {
+                        throw (NoDataException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+            if (temporaneo.isPartial()) {
+                throw new MiningCancelledException("Clustering interrotto dopo " + temporaneo.getDepth() + " livelli su "
+                        + profondita + ": risultato incompleto scartato");
+            }
+            ResultCache.shared().put(tableName, profondita, linkMode, fingerprint, temporaneo);
+        } else {
+            System.out.println("risultato riutilizzato dalla cache (" + ResultCache.shared() + ")");
+        }
+        return temporaneo;
+    }
+
+    /**
+     * Invia il dendrogramma al client e, se il client lo richiede, lo salva su file.
+     *
+     * @param temporaneo Il dendrogramma da inviare
+     * @param streaming true per inviare il dendrogramma a blocchi
+     * @throws IOException Se si verifica un errore di I/O
+     * @throws ClassNotFoundException Se non viene trovata la classe richiesta
+     * @throws ClientDisconnectedException Se il client si disconnette
+     */
+    private void sendAndSave(HierachicalClusterMiner temporaneo, boolean streaming)
+            throws IOException, ClassNotFoundException, ClientDisconnectedException {
+        sendDendrogram(temporaneo, streaming);
         // ricevo messaggio di salvataggio dal client
         System.out.println("aspetto messaggio salvataggio...");
         String save = (String) in.readObject();
@@ -254,10 +590,92 @@ public class serverOneClient extends Thread {
         }
     }
 
+    /**
+     * Gestisce i comandi dei clustering asincroni: avvio, stato, ritiro del risultato e annullamento.
+     *
+     * @param mode Il comando ricevuto dal client
+     * @throws IOException Se si verifica un errore di I/O
+     * @throws ClassNotFoundException Se non viene trovata la classe richiesta
+     * @throws ClientDisconnectedException Se il client si disconnette
+     */
+    private void jobMode(String mode) throws IOException, ClassNotFoundException, ClientDisconnectedException {
+        if (mode.equals("Submit")) {
+            submitJob();
+            return;
+        }
+
+        System.out.println("aspetto l'identificativo del lavoro...");
+        long id = ((Number) in.readObject()).longValue();
+        System.out.println("ricevuto : " + id);
+        MiningJob job = jobs.get(id);
+        JobStatus status = job == null ? JobStatus.UNKNOWN : job.getStatus();
+
+        if (mode.equals("Poll")) {
+            out.writeObject(status.name());
+        } else if (mode.equals("Cancel")) {
+            out.writeObject(job != null && JobScheduler.shared().cancel(job));
+            jobs.remove(id);
+        } else {
+            out.writeObject(status.name());
+            if (status == JobStatus.DONE) {
+                jobs.remove(id);
+                sendAndSave(job.getResult(), mode.equals("FetchStream"));
+            } else if (status == JobStatus.FAILED) {
+                jobs.remove(id);
+                out.writeObject(job.getError());
+            } else if (status == JobStatus.CANCELLED) {
+                jobs.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Riceve dal client la tabella e i parametri del clustering e lo affida a {@link JobScheduler},
+     * inviando al client l'identificativo del lavoro.
+     *
+     * @throws IOException Se si verifica un errore di I/O
+     * @throws ClassNotFoundException Se non viene trovata la classe richiesta
+     * @throws ClientDisconnectedException Se il client si disconnette
+     */
+    private void submitJob() throws IOException, ClassNotFoundException, ClientDisconnectedException {
+        displayTables();
+        System.out.println("aspetto il nome della tabella da caricare...");
+        String tableName = (String) in.readObject();
+        System.out.println("ricevuto : " + tableName);
+        if (HomeCheck(tableName)) {
+            return;
+        } else if (tableName.equals("Close")) {
+            throw new ClientDisconnectedException("Client disconnesso in fase di avvio del lavoro");
+        }
+        int profondita = (int) in.readObject();
+        int linkMode = (int) in.readObject();
+        System.out.println("ricevuto : profondità " + profondita + ", modalità " + linkMode);
+
+        CancellationToken token = CancellationToken.withTimeout(MINING_TIMEOUT_MILLIS);
+        MiningJob job = new MiningJob(token, () -> computeDendrogram(tableName, profondita, linkMode, token));
+        try {
+            JobScheduler.shared().submit(job);
+        } catch (RejectedExecutionException e) {
+            out.writeObject("Server occupato, riprovare più tardi");
+            return;
+        }
+        jobs.put(job.getId(), job);
+        out.writeObject(job.getId());
+    }
+
     /**
      * Gestisce la modalità di interazione con il client per caricare un dendrogramma da file.
      */
     public void fileMode() throws ClientDisconnectedException, FileNotFoundException {
+        fileMode(false);
+    }
+
+    /**
+     * Gestisce la modalità di interazione con il client per caricare un dendrogramma da file.
+     *
+     * @param streaming true per inviare il dendrogramma a blocchi
+     */
+    public void fileMode(boolean streaming) throws ClientDisconnectedException, FileNotFoundException {
         try {
             //invio  i nomi dei file
             displayFiles();
@@ -270,7 +688,7 @@ public class serverOneClient extends Thread {
             }else if(nomeFile.equals("Close")){
                 throw new ClientDisconnectedException("Client disconnesso in modalità file");
             }
-            loadDedrogramFromFileOnServer(nomeFile);
+            loadDedrogramFromFileOnServer(nomeFile, streaming);
         } catch (IOException | ClassNotFoundException e) {
             throw new RuntimeException(e);
         }
@@ -291,7 +709,19 @@ public class serverOneClient extends Thread {
         return check;
     }
 
-    private void closeConnection() {
+    /**
+     * Chiude gli stream e il socket della connessione con il client.
+     */
+    void closeConnection() {
+        // i lavori non ritirati non interessano più a nessuno
+        for (MiningJob job : jobs.values()) {
+            JobScheduler.shared().cancel(job);
+        }
+        jobs.clear();
+        if (sessionCounted) {
+            sessionCounted = false;
+            ServerMetrics.shared().sessionClosed();
+        }
         try {
             if (in != null) {
                 in.close();
@@ -0,0 +1,101 @@
+package src.clustering;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import src.data.Data;
+import src.data.Example;
+import src.distance.AverageLinkDistance;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica la scrittura e la lettura dei dendrogrammi nel formato binario di {@link DendrogramFile}.
+ */
+class DendrogramFileTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void roundTripWithLevelIndex() throws IOException {
+		assertRoundTrip(true);
+	}
+
+	@Test
+	void roundTripWithoutLevelIndex() throws IOException {
+		assertRoundTrip(false);
+	}
+
+	@Test
+	void truncatedFileIsRejected() throws IOException {
+		Path file = dir.resolve("troncato.HCM");
+		DendrogramFile.write(file, mine(30).getMerges(), true);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - Integer.BYTES);
+		}
+		assertTrue(DendrogramFile.isBinary(file));
+		assertThrows(IOException.class, () -> DendrogramFile.read(file));
+	}
+
+	@Test
+	void overwriteLeavesNoTemporaryFile() throws IOException {
+		Path file = dir.resolve("sovrascritto.HCM");
+		DendrogramFile.write(file, mine(20).getMerges(), true);
+		DendrogramFile.write(file, mine(25).getMerges(), true);
+		assertEquals(25, DendrogramFile.read(file).getNumberOfExamples());
+		try (Stream<Path> files = Files.list(dir)) {
+			assertEquals(List.of(file), files.toList());
+		}
+	}
+
+	/**
+	 * Scrive e rilegge un dendrogramma, verificando che ogni livello sia rimasto invariato.
+	 *
+	 * @param levelIndex true per scrivere anche l'indice dei livelli.
+	 * @throws IOException Se la scrittura o la lettura falliscono.
+	 */
+	private void assertRoundTrip(boolean levelIndex) throws IOException {
+		Dendrogram expected = mine(40);
+		Path file = dir.resolve("dendrogramma.HCM");
+		DendrogramFile.write(file, expected.getMerges(), levelIndex);
+
+		MergeList merges = DendrogramFile.read(file);
+		assertEquals(levelIndex, merges.hasLevelIndex());
+		Dendrogram actual = new Dendrogram(merges);
+		assertEquals(expected.getDepth(), actual.getDepth());
+		for (int level = 0; level < expected.getDepth(); level++) {
+			assertEquals(expected.toString(level), actual.toString(level), "livello " + level);
+		}
+	}
+
+	/**
+	 * Costruisce il dendrogramma completo di un dataset casuale.
+	 *
+	 * @param n Numero di esempi.
+	 * @return Dendrogramma memorizzato come sequenza di fusioni.
+	 */
+	private static Dendrogram mine(int n) {
+		Random random = new Random(n);
+		List<Example> examples = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			examples.add(new Example(new double[]{random.nextDouble(), random.nextDouble()}));
+		}
+		Dendrogram dendrogram = new Dendrogram(n);
+		new LanceWilliamsEngine().mine(new Data(examples), new AverageLinkDistance(), dendrogram);
+		assertNotNull(dendrogram.getMerges());
+		return dendrogram;
+	}
+}
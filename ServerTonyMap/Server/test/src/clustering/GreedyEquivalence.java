@@ -0,0 +1,94 @@
+package src.clustering;
+
+import src.data.Data;
+import src.data.Example;
+import src.distance.ClusterDistance;
+import src.exceptions.NoDataException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Confronto tra il dendrogramma di una strategia di clustering e quello di {@link GreedyMergeEngine},
+ * che ricalcola a ogni livello le distanze tra tutti gli esempi ed è quindi il riferimento.
+ */
+final class GreedyEquivalence {
+
+	private GreedyEquivalence() {
+	}
+
+	/**
+	 * Crea un dataset con molte distanze uguali, formato da interi su una sola dimensione.
+	 *
+	 * @param random Generatore dei valori.
+	 * @return Esempi del dataset.
+	 */
+	static List<Example> tied(Random random) {
+		List<Example> examples = new ArrayList<>();
+		int n = 5 + random.nextInt(40);
+		for (int i = 0; i < n; i++) {
+			examples.add(new Example(new double[]{random.nextInt(12)}));
+		}
+		return examples;
+	}
+
+	/**
+	 * Crea un dataset di interi su più dimensioni: le distanze tra esempi hanno molti pareggi, e le medie
+	 * dell'Average Linkage calcolate in modi diversi possono differire solo per arrotondamento.
+	 *
+	 * @param random Generatore dei valori.
+	 * @param dimensions Numero di dimensioni.
+	 * @param range Numero di valori interi possibili per ogni dimensione.
+	 * @return Esempi del dataset.
+	 */
+	static List<Example> grid(Random random, int dimensions, int range) {
+		List<Example> examples = new ArrayList<>();
+		int n = 5 + random.nextInt(60);
+		for (int i = 0; i < n; i++) {
+			double[] values = new double[dimensions];
+			for (int j = 0; j < dimensions; j++) {
+				values[j] = random.nextInt(range);
+			}
+			examples.add(new Example(values));
+		}
+		return examples;
+	}
+
+	/**
+	 * Crea un dataset di valori continui su tre dimensioni, in cui le distanze sono quasi sempre diverse.
+	 *
+	 * @param random Generatore dei valori.
+	 * @return Esempi del dataset.
+	 */
+	static List<Example> continuous(Random random) {
+		List<Example> examples = new ArrayList<>();
+		int n = 5 + random.nextInt(60);
+		for (int i = 0; i < n; i++) {
+			examples.add(new Example(new double[]{random.nextDouble(), random.nextDouble(), random.nextDouble()}));
+		}
+		return examples;
+	}
+
+	/**
+	 * Verifica che la strategia produca lo stesso dendrogramma di {@link GreedyMergeEngine}. Ogni strategia
+	 * lavora su un nuovo {@link Data}, per non riutilizzare la matrice delle distanze calcolata dall'altra.
+	 *
+	 * @param engine Strategia da verificare.
+	 * @param distance Metrica con cui costruire i dendrogrammi.
+	 * @param examples Esempi del dataset.
+	 * @param description Descrizione del dataset, riportata in caso di differenze.
+	 * @throws NoDataException Se il dataset non contiene esempi.
+	 */
+	static void assertSameAsGreedy(MiningEngine engine, ClusterDistance distance, List<Example> examples, String description) throws NoDataException {
+		int n = examples.size();
+		HierachicalClusterMiner expected = new HierachicalClusterMiner(n);
+		expected.mine(new Data(examples), distance, new GreedyMergeEngine());
+		HierachicalClusterMiner actual = new HierachicalClusterMiner(n);
+		actual.mine(new Data(examples), distance, engine);
+		assertEquals(expected.toString(), actual.toString(), engine.getClass().getSimpleName() + " con "
+				+ distance.getClass().getSimpleName() + ", " + description);
+	}
+}
@@ -0,0 +1,40 @@
+package src.clustering;
+
+import org.junit.jupiter.api.Test;
+import src.data.Data;
+import src.distance.SingleLinkDistance;
+import src.exceptions.NoDataException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica il caricamento dei dendrogrammi salvati e il rifiuto dei dataset vuoti.
+ */
+class HierachicalClusterMinerTest {
+
+	/**
+	 * I file in FileDir sono stati salvati con la serializzazione Java, prima del formato binario di
+	 * {@link DendrogramFile}, e devono restare leggibili.
+	 */
+	@Test
+	void legacySerializedFilesStillLoad() throws IOException, ClassNotFoundException {
+		for (String filename : List.of("DonAndo.HCM", "lelluz.HCM")) {
+			assertFalse(DendrogramFile.isBinary(Path.of("FileDir", filename)), filename);
+			HierachicalClusterMiner miner = HierachicalClusterMiner.loadHierachicalClusterMiner(filename);
+			assertTrue(miner.getDepth() > 0, filename);
+			assertFalse(miner.toString().isEmpty(), filename);
+		}
+	}
+
+	@Test
+	void emptyDatasetIsRejected() {
+		HierachicalClusterMiner miner = new HierachicalClusterMiner(1);
+		assertThrows(NoDataException.class, () -> miner.mine(new Data(List.of()), new SingleLinkDistance()));
+	}
+}
@@ -0,0 +1,47 @@
+package src.clustering;
+
+import org.junit.jupiter.api.Test;
+import src.distance.AverageLinkDistance;
+import src.distance.ClusterDistance;
+import src.distance.SingleLinkDistance;
+import src.exceptions.NoDataException;
+
+import java.util.List;
+import java.util.Random;
+
+import static src.clustering.GreedyEquivalence.assertSameAsGreedy;
+
+/**
+ * Verifica che {@link LanceWilliamsEngine} produca lo stesso dendrogramma di {@link GreedyMergeEngine}.
+ */
+class LanceWilliamsEngineTest {
+
+	private static final List<ClusterDistance> DISTANCES = List.of(new SingleLinkDistance(), new AverageLinkDistance());
+
+	@Test
+	void matchesGreedyOnTies() throws NoDataException {
+		for (ClusterDistance distance : DISTANCES) {
+			for (int seed = 0; seed < 50; seed++) {
+				assertSameAsGreedy(new LanceWilliamsEngine(), distance, GreedyEquivalence.tied(new Random(seed)), "pareggi, seme " + seed);
+			}
+		}
+	}
+
+	@Test
+	void matchesGreedyOnMultidimensionalTies() throws NoDataException {
+		for (ClusterDistance distance : DISTANCES) {
+			for (int seed = 0; seed < 50; seed++) {
+				assertSameAsGreedy(new LanceWilliamsEngine(), distance, GreedyEquivalence.grid(new Random(seed), 3, 8), "pareggi su tre dimensioni, seme " + seed);
+			}
+		}
+	}
+
+	@Test
+	void matchesGreedyOnContinuousData() throws NoDataException {
+		for (ClusterDistance distance : DISTANCES) {
+			for (int seed = 0; seed < 50; seed++) {
+				assertSameAsGreedy(new LanceWilliamsEngine(), distance, GreedyEquivalence.continuous(new Random(seed)), "dati continui, seme " + seed);
+			}
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package src.clustering;
+
+import org.junit.jupiter.api.Test;
+import src.distance.AverageLinkDistance;
+import src.distance.ClusterDistance;
+import src.distance.SingleLinkDistance;
+import src.exceptions.NoDataException;
+
+import java.util.List;
+import java.util.Random;
+
+import static src.clustering.GreedyEquivalence.assertSameAsGreedy;
+
+/**
+ * Verifica che {@link NNChainEngine} produca lo stesso dendrogramma di {@link GreedyMergeEngine}.
+ */
+class NNChainEngineTest {
+
+	private static final List<ClusterDistance> DISTANCES = List.of(new SingleLinkDistance(), new AverageLinkDistance());
+
+	@Test
+	void matchesGreedyOnTies() throws NoDataException {
+		for (ClusterDistance distance : DISTANCES) {
+			for (int seed = 0; seed < 50; seed++) {
+				assertSameAsGreedy(new NNChainEngine(), distance, GreedyEquivalence.tied(new Random(seed)), "pareggi, seme " + seed);
+			}
+		}
+	}
+
+	@Test
+	void matchesGreedyOnMultidimensionalTies() throws NoDataException {
+		for (ClusterDistance distance : DISTANCES) {
+			for (int seed = 0; seed < 50; seed++) {
+				assertSameAsGreedy(new NNChainEngine(), distance, GreedyEquivalence.grid(new Random(seed), 3, 8), "pareggi su tre dimensioni, seme " + seed);
+			}
+		}
+	}
+
+	/**
+	 * Due fusioni trovate dalla catena hanno altezze diverse solo per arrotondamento: le distanze calcolate
+	 * sugli esempi coincidono, per cui vanno applicate in ordine di indice come farebbe {@link GreedyMergeEngine}.
+	 */
+	@Test
+	void ordersNearTiesLikeGreedy() throws NoDataException {
+		assertSameAsGreedy(new NNChainEngine(), new AverageLinkDistance(), GreedyEquivalence.grid(new Random(130), 3, 20), "pareggi a meno di arrotondamenti");
+	}
+
+	@Test
+	void matchesGreedyOnContinuousData() throws NoDataException {
+		for (ClusterDistance distance : DISTANCES) {
+			for (int seed = 0; seed < 50; seed++) {
+				assertSameAsGreedy(new NNChainEngine(), distance, GreedyEquivalence.continuous(new Random(seed)), "dati continui, seme " + seed);
+			}
+		}
+	}
+}
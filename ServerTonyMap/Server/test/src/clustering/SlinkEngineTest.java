@@ -0,0 +1,75 @@
+package src.clustering;
+
+import org.junit.jupiter.api.Test;
+import src.data.Data;
+import src.data.Example;
+import src.distance.AverageLinkDistance;
+import src.distance.ClusterDistance;
+import src.distance.SingleLinkDistance;
+import src.exceptions.NoDataException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static src.clustering.GreedyEquivalence.assertSameAsGreedy;
+
+/**
+ * Verifica che {@link SlinkEngine} produca lo stesso dendrogramma di {@link GreedyMergeEngine}.
+ */
+class SlinkEngineTest {
+
+	private static final List<ClusterDistance> DISTANCES = List.of(new SingleLinkDistance(), new AverageLinkDistance());
+
+	@Test
+	void matchesGreedyOnTies() throws NoDataException {
+		for (ClusterDistance distance : DISTANCES) {
+			for (int seed = 0; seed < 50; seed++) {
+				assertSameAsGreedy(new SlinkEngine(), distance, GreedyEquivalence.tied(new Random(seed)), "pareggi, seme " + seed);
+			}
+		}
+	}
+
+	@Test
+	void matchesGreedyOnMultidimensionalTies() throws NoDataException {
+		for (ClusterDistance distance : DISTANCES) {
+			for (int seed = 0; seed < 50; seed++) {
+				assertSameAsGreedy(new SlinkEngine(), distance, GreedyEquivalence.grid(new Random(seed), 3, 8), "pareggi su tre dimensioni, seme " + seed);
+			}
+		}
+	}
+
+	/**
+	 * Con molti pareggi su un dataset più grande le fusioni della stessa altezza sono ricostruite senza
+	 * calcolare la matrice delle distanze, e nello stesso ordine di {@link LanceWilliamsEngine}, che a
+	 * sua volta coincide con {@link GreedyMergeEngine}.
+	 */
+	@Test
+	void resolvesTiesWithoutDistanceMatrix() throws NoDataException {
+		Random random = new Random(7);
+		List<Example> examples = new ArrayList<>();
+		for (int i = 0; i < 600; i++) {
+			examples.add(new Example(new double[]{random.nextInt(40), random.nextInt(3)}));
+		}
+		Data data = new Data(examples);
+		long footprint = data.getMemoryFootprint();
+
+		HierachicalClusterMiner actual = new HierachicalClusterMiner(examples.size());
+		actual.mine(data, new SingleLinkDistance(), new SlinkEngine());
+		assertEquals(footprint, data.getMemoryFootprint(), "la matrice delle distanze non deve essere calcolata");
+
+		HierachicalClusterMiner expected = new HierachicalClusterMiner(examples.size());
+		expected.mine(new Data(examples), new SingleLinkDistance(), new LanceWilliamsEngine());
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	@Test
+	void matchesGreedyOnContinuousData() throws NoDataException {
+		for (ClusterDistance distance : DISTANCES) {
+			for (int seed = 0; seed < 50; seed++) {
+				assertSameAsGreedy(new SlinkEngine(), distance, GreedyEquivalence.continuous(new Random(seed)), "dati continui, seme " + seed);
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package src.data;
+
+import org.junit.jupiter.api.Test;
+import src.clustering.CancellationToken;
+import src.exceptions.MiningCancelledException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Verifica il calcolo condiviso della matrice delle distanze di {@link Data}.
+ */
+class DataTest {
+
+	/**
+	 * Chi ha un token già annullato fa fallire il proprio calcolo, che viene eliminato mentre altri thread
+	 * stanno cercando di pubblicarne uno: questi devono comunque ottenere la stessa matrice, senza restare
+	 * in attesa di un calcolo che nessuno esegue.
+	 */
+	@Test
+	void failedComputationDoesNotBlockOtherCallers() {
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			for (int round = 0; round < 500; round++) {
+				Data data = new Data(examples(20, round));
+				CancellationToken cancelled = new CancellationToken();
+				cancelled.cancel();
+				List<Future<DistanceMatrix>> live = new ArrayList<>();
+				ExecutorService executor = Executors.newFixedThreadPool(16);
+				try {
+					for (int i = 0; i < 16; i++) {
+						if (i % 4 != 0) {
+							executor.submit(() -> assertThrows(MiningCancelledException.class, () -> data.distance(cancelled)));
+						} else {
+							live.add(executor.submit(() -> data.distance(new CancellationToken())));
+						}
+					}
+					DistanceMatrix expected = live.get(0).get();
+					for (Future<DistanceMatrix> f : live) {
+						assertSame(expected, f.get());
+					}
+				} finally {
+					executor.shutdown();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Una matrice ottenuta con {@link Data#newDistance(CancellationToken)} è una copia di quella condivisa,
+	 * che resta memorizzata per i clustering successivi e non risente delle modifiche alla copia.
+	 */
+	@Test
+	void newDistanceCopiesTheSharedMatrix() {
+		Data data = new Data(examples(50, 0));
+		DistanceMatrix working = data.newDistance(new CancellationToken());
+		DistanceMatrix shared = data.distance();
+		assertNotSame(shared, working);
+
+		double expected = shared.get(3, 7);
+		working.set(3, 7, -1.0);
+		assertEquals(expected, data.distance().get(3, 7));
+		assertSame(shared, data.distance());
+	}
+
+	/**
+	 * Crea un dataset casuale su tre dimensioni.
+	 *
+	 * @param n Numero di esempi.
+	 * @param seed Seme del generatore.
+	 * @return Esempi del dataset.
+	 */
+	private static List<Example> examples(int n, long seed) {
+		Random random = new Random(seed);
+		List<Example> examples = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			examples.add(new Example(new double[]{random.nextDouble(), random.nextDouble(), random.nextDouble()}));
+		}
+		return examples;
+	}
+}
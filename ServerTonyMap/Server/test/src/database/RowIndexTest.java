@@ -0,0 +1,51 @@
+package src.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Verifica il raggruppamento delle righe uguali di {@link RowIndex}, che deve trattare i valori come
+ * {@code SELECT DISTINCT}: 0.0 e -0.0 sono uguali, così come due NaN.
+ */
+class RowIndexTest {
+
+	@Test
+	void positiveAndNegativeZeroAreTheSameRow() {
+		RowIndex index = new RowIndex();
+		int first = index.add(new double[]{0.0, 1.0});
+		int second = index.add(new double[]{-0.0, 1.0});
+		assertEquals(first, second);
+		assertEquals(1, index.size());
+		assertArrayEquals(new int[]{2}, index.getCounts());
+	}
+
+	@Test
+	void nanRowsAreTheSameRow() {
+		RowIndex index = new RowIndex();
+		int first = index.add(new double[]{Double.NaN, 2.0});
+		int second = index.add(new double[]{0.0 / 0.0, 2.0});
+		assertEquals(first, second);
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	void distinctRowsAreCountedSeparately() {
+		RowIndex index = new RowIndex();
+		double[] row = new double[2];
+		for (int i = 0; i < 1000; i++) {
+			// l'array viene riutilizzato: RowIndex deve copiarlo
+			row[0] = i % 100;
+			row[1] = -(i % 100);
+			index.add(row);
+		}
+		assertEquals(100, index.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(10, index.getCounts()[i]);
+			assertArrayEquals(new double[]{i, -i}, index.get(i));
+		}
+		assertNotEquals(index.add(new double[]{Double.NaN, 0.0}), index.add(new double[]{0.0, 0.0}));
+	}
+}
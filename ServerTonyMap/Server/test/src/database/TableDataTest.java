@@ -0,0 +1,125 @@
+package src.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica le impronte delle tabelle di {@link TableData} su un database simulato, che risponde alle
+ * sole interrogazioni utilizzate per calcolarle.
+ */
+class TableDataTest {
+
+	/**
+	 * Un UPDATE che non cambia il numero di righe, come la correzione di un valore, deve cambiare l'impronta.
+	 */
+	@Test
+	void sameSizeUpdateChangesFingerprint() {
+		FakeDatabase database = new FakeDatabase(new double[][]{{1.0, 2.0}, {3.0, 4.0}, {5.0, 6.0}});
+		TableData tableData = new TableData(database);
+
+		String before = tableData.readFingerprint("esempi");
+		database.rows[1][0] = 7.0;
+		String after = tableData.readFingerprint("esempi");
+
+		assertNotNull(before);
+		assertNotEquals(before, after);
+	}
+
+	/**
+	 * Se il DBMS non fornisce l'istante dell'ultima modifica, l'impronta basata sui metadati non è
+	 * disponibile e si deve ripiegare su CHECKSUM TABLE; la sessione deve comunque chiedere metadati aggiornati.
+	 */
+	@Test
+	void metadataWithoutUpdateTimeIsNotAFingerprint() throws SQLException {
+		FakeDatabase database = new FakeDatabase(new double[][]{{1.0, 2.0}});
+		try (Connection conn = database.getConnection()) {
+			assertNull(TableData.getMetadataFingerprint(conn, "esempi"));
+		}
+		assertTrue(database.statements.contains("SET SESSION information_schema_stats_expiry = 0"), database.statements.toString());
+	}
+
+	/**
+	 * Database simulato che contiene una sola tabella, il cui valore di UPDATE_TIME è sempre null.
+	 */
+	private static final class FakeDatabase extends DbAccess {
+
+		private final double[][] rows;
+
+		private final List<String> statements = new ArrayList<>();
+
+		FakeDatabase(double[][] rows) {
+			this.rows = rows;
+		}
+
+		@Override
+		public Connection getConnection() {
+			return proxy(Connection.class, (name, args) -> switch (name) {
+				case "createStatement" -> statement();
+				case "prepareStatement" -> statement();
+				default -> null;
+			});
+		}
+
+		private Statement statement() {
+			return proxy(PreparedStatement.class, (name, args) -> switch (name) {
+				case "execute" -> {
+					statements.add((String) args[0]);
+					yield false;
+				}
+				case "executeQuery" -> args == null ? resultSet(new Object[]{null}) : query((String) args[0]);
+				default -> null;
+			});
+		}
+
+		private ResultSet query(String sql) {
+			statements.add(sql);
+			if (sql.startsWith("CHECKSUM TABLE")) {
+				return resultSet(new Object[]{"esempi", (long) Arrays.deepHashCode(rows)});
+			}
+			return resultSet(new Object[]{(long) rows.length});
+		}
+
+		private static ResultSet resultSet(Object[] row) {
+			int[] cursor = {-1};
+			Object[] last = {null};
+			return proxy(ResultSet.class, (name, args) -> switch (name) {
+				case "next" -> ++cursor[0] == 0;
+				case "getLong" -> {
+					last[0] = row[(int) args[0] - 1];
+					yield last[0] == null ? 0L : last[0];
+				}
+				case "getTimestamp" -> last[0] = row[(int) args[0] - 1];
+				case "wasNull" -> last[0] == null;
+				default -> null;
+			});
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> T proxy(Class<T> type, Handler handler) {
+			return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+					(proxy, method, args) -> handler.invoke(method.getName(), args));
+		}
+	}
+
+	/**
+	 * Risposta di un oggetto JDBC simulato a una chiamata di metodo.
+	 */
+	private interface Handler {
+		Object invoke(String name, Object[] args);
+	}
+}
@@ -0,0 +1,78 @@
+package src;
+
+import org.junit.jupiter.api.Test;
+import src.clustering.CancellationToken;
+import src.exceptions.MiningCancelledException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Verifica l'esecuzione dei clustering sincroni su {@link miningPool}.
+ */
+class miningPoolTest {
+
+	/**
+	 * Molti più client dei thread disponibili, e dei posti nella coda di {@link src.jobs.JobScheduler},
+	 * ottengono tutti il proprio risultato.
+	 */
+	@Test
+	void manyClientsAreNeverRejected() {
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+				List<Future<Integer>> results = new ArrayList<>();
+				for (int i = 0; i < 64; i++) {
+					int value = i;
+					results.add(clients.submit(() -> miningPool.compute(new CancellationToken(), () -> {
+						Thread.sleep(10);
+						return value;
+					})));
+				}
+				for (int i = 0; i < results.size(); i++) {
+					assertEquals(i, results.get(i).get());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Un clustering ancora in coda quando il token viene annullato non viene eseguito, e chi lo attende
+	 * non resta bloccato finché un thread si libera.
+	 */
+	@Test
+	void cancelledWhileQueuedIsNotRun() {
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			CountDownLatch busy = new CountDownLatch(miningPool.THREADS);
+			CountDownLatch release = new CountDownLatch(1);
+			boolean[] ran = {false};
+			try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+				for (int i = 0; i < miningPool.THREADS; i++) {
+					clients.submit(() -> miningPool.compute(new CancellationToken(), () -> {
+						busy.countDown();
+						release.await();
+						return null;
+					}));
+				}
+				busy.await();
+
+				CancellationToken token = new CancellationToken();
+				Future<Object> queued = clients.submit(() -> miningPool.compute(token, () -> ran[0] = true));
+				token.cancel();
+				Exception e = assertThrows(Exception.class, queued::get);
+				assertEquals(MiningCancelledException.class, e.getCause().getClass());
+				release.countDown();
+			}
+			assertFalse(ran[0]);
+		});
+	}
+}
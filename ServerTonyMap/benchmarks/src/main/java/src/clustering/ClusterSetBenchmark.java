@@ -0,0 +1,80 @@
+package src.clustering;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import src.data.Data;
+import src.data.SyntheticData;
+import src.distance.AverageLinkDistance;
+import src.distance.ClusterDistance;
+import src.distance.SingleLinkDistance;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark di un passo del clustering per fusioni successive
+ * ({@link ClusterSet#mergeClosestClusters(ClusterDistance, Data)}), a partire da un insieme di
+ * {@code n} cluster. Il benchmark si trova nel package {@code src.clustering} perché
+ * {@link ClusterSet} non è pubblica.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class ClusterSetBenchmark {
+
+    /** Numero di esempi del dataset */
+    @Param({"200", "1000"})
+    public int n;
+
+    /** Dimensione degli esempi */
+    @Param({"2", "16"})
+    public int d;
+
+    /** Numero di cluster su cui eseguire la fusione: tutti singoletti se pari a {@code n} */
+    @Param({"1.0", "0.1"})
+    public double clusters;
+
+    /** Distanza tra cluster */
+    @Param({"single", "average"})
+    public String linkage;
+
+    private Data data;
+    private ClusterDistance distance;
+    private ClusterSet set;
+
+    @Setup
+    public void setUp() {
+        data = SyntheticData.of(n, d);
+        data.distance();
+        distance = linkage.equals("single") ? new SingleLinkDistance() : new AverageLinkDistance();
+        // i cluster di partenza si ottengono raggruppando gli esempi in modo circolare
+        int k = Math.max(2, (int) (n * clusters));
+        Cluster[] groups = new Cluster[k];
+        for (int i = 0; i < n; i++) {
+            if (groups[i % k] == null) {
+                groups[i % k] = new Cluster();
+            }
+            groups[i % k].addData(i);
+        }
+        set = new ClusterSet(k);
+        for (Cluster c : groups) {
+            set.append(c);
+        }
+    }
+
+    @Benchmark
+    public ClusterSet mergeClosestClusters() {
+        return set.mergeClosestClusters(distance, data);
+    }
+}
@@ -0,0 +1,115 @@
+package src.clustering;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import src.data.Data;
+import src.data.Example;
+import src.data.SyntheticData;
+import src.distance.AverageLinkDistance;
+import src.distance.ClusterDistance;
+import src.distance.SingleLinkDistance;
+import src.exceptions.NoDataException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del clustering completo e delle operazioni sul dendrogramma ottenuto: stampa,
+ * salvataggio e lettura da file.
+ * <p>
+ * I file vengono scritti, come dal server, nella cartella {@code FileDir} della directory di
+ * lavoro, e sono eliminati al termine del benchmark.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class HierachicalClusterMinerBenchmark {
+
+    /** Numero di esempi del dataset */
+    @Param({"500", "2000"})
+    public int n;
+
+    /** Dimensione degli esempi */
+    @Param({"2", "16"})
+    public int d;
+
+    /** Profondità del dendrogramma */
+    @Param({"10", "500"})
+    public int depth;
+
+    /** Distanza tra cluster */
+    @Param({"single", "average"})
+    public String linkage;
+
+    private List<Example> examples;
+    private ClusterDistance distance;
+    private HierachicalClusterMiner mined;
+    private String filename;
+
+    @Setup
+    public void setUp() throws IOException, NoDataException {
+        examples = SyntheticData.examples(n, d);
+        distance = linkage.equals("single") ? new SingleLinkDistance() : new AverageLinkDistance();
+        mined = new HierachicalClusterMiner(depth);
+        mined.mine(new Data(examples), distance);
+        filename = "benchmark-" + n + "-" + d + "-" + depth + "-" + linkage;
+        mined.salva(filename);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file());
+    }
+
+    /**
+     * Ogni clustering lavora su un dataset nuovo, per cui comprende il calcolo della matrice delle distanze.
+     */
+    @Benchmark
+    public HierachicalClusterMiner mine() throws NoDataException {
+        HierachicalClusterMiner miner = new HierachicalClusterMiner(depth);
+        miner.mine(new Data(examples), distance);
+        return miner;
+    }
+
+    @Benchmark
+    public String dendrogramToString() {
+        return mined.view().toString();
+    }
+
+    @Benchmark
+    public HierachicalClusterMiner saveAndLoad() throws IOException, ClassNotFoundException {
+        mined.salva(filename);
+        return HierachicalClusterMiner.loadHierachicalClusterMiner(filename + ".HCM");
+    }
+
+    @Benchmark
+    public HierachicalClusterMiner load() throws IOException, ClassNotFoundException {
+        return HierachicalClusterMiner.loadHierachicalClusterMiner(filename + ".HCM");
+    }
+
+    /**
+     * Restituisce il percorso del file su cui viene salvato il dendrogramma
+     * @return percorso utilizzato da {@link HierachicalClusterMiner#salva(String)}
+     */
+    private Path file() {
+        return Paths.get("").toAbsolutePath().resolve("FileDir").resolve(filename + ".HCM");
+    }
+}
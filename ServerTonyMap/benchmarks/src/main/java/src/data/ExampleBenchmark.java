@@ -0,0 +1,64 @@
+package src.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark della distanza tra due esempi ({@link Example#distance(Example)}) e del calcolo della
+ * matrice delle distanze di un intero dataset ({@link Data#distance()}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class ExampleBenchmark {
+
+    /** Dimensione degli esempi */
+    @Param({"2", "16", "128"})
+    public int d;
+
+    /** Numero di esempi del dataset di cui calcolare la matrice delle distanze */
+    @Param({"1000"})
+    public int n;
+
+    private Example a;
+    private Example b;
+    private List<Example> examples;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(d);
+        a = SyntheticData.example(d, random);
+        b = SyntheticData.example(d, random);
+        examples = SyntheticData.examples(n, d);
+    }
+
+    @Benchmark
+    public double distance() {
+        return a.distance(b);
+    }
+
+    /**
+     * Calcola la matrice delle distanze su un dataset nuovo, che non l'ha ancora memorizzata.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public DistanceMatrix distanceMatrix() {
+        return new Data(examples).distance();
+    }
+}
@@ -0,0 +1,75 @@
+package src.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generatore dei dataset sintetici utilizzati dai benchmark, che non richiedono un database.
+ * <p>
+ * Gli esempi sono distribuiti attorno a pochi centri, come i dati reali per cui ha senso il
+ * clustering, e sono generati a partire da un seme fisso, per cui ogni esecuzione lavora sugli
+ * stessi valori.
+ * </p>
+ */
+public final class SyntheticData {
+
+    /** Seme del generatore */
+    private static final long SEED = 42L;
+
+    /** Numero di centri attorno a cui sono distribuiti gli esempi */
+    private static final int CENTERS = 8;
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Genera un esempio con valori uniformi in [0, 1)
+     * @param d dimensione dell'esempio
+     * @param random generatore da utilizzare
+     * @return nuovo esempio
+     */
+    public static Example example(int d, Random random) {
+        double[] values = new double[d];
+        for (int k = 0; k < d; k++) {
+            values[k] = random.nextDouble();
+        }
+        return new Example(values);
+    }
+
+    /**
+     * Genera gli esempi di un dataset
+     * @param n numero di esempi
+     * @param d dimensione di ogni esempio
+     * @return lista di esempi distinti
+     */
+    public static List<Example> examples(int n, int d) {
+        Random random = new Random(SEED);
+        double[][] centers = new double[CENTERS][d];
+        for (double[] center : centers) {
+            for (int k = 0; k < d; k++) {
+                center[k] = random.nextDouble() * 100;
+            }
+        }
+        List<Example> examples = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double[] center = centers[i % CENTERS];
+            double[] values = new double[d];
+            for (int k = 0; k < d; k++) {
+                values[k] = center[k] + random.nextGaussian() * 5;
+            }
+            examples.add(new Example(values));
+        }
+        return examples;
+    }
+
+    /**
+     * Genera un dataset
+     * @param n numero di esempi
+     * @param d dimensione di ogni esempio
+     * @return nuovo dataset, senza matrice delle distanze
+     */
+    public static Data of(int n, int d) {
+        return new Data(examples(n, d));
+    }
+}
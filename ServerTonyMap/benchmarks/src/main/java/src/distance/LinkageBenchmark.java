@@ -0,0 +1,67 @@
+package src.distance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import src.clustering.Cluster;
+import src.data.Data;
+import src.data.SyntheticData;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark delle distanze tra due cluster di {@code n} esempi ciascuno, con la matrice delle
+ * distanze tra gli esempi già calcolata.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class LinkageBenchmark {
+
+    /** Numero di esempi di ogni cluster */
+    @Param({"16", "256"})
+    public int n;
+
+    /** Dimensione degli esempi */
+    @Param({"2", "16"})
+    public int d;
+
+    private final ClusterDistance single = new SingleLinkDistance();
+    private final ClusterDistance average = new AverageLinkDistance();
+    private Data data;
+    private Cluster c1;
+    private Cluster c2;
+
+    @Setup
+    public void setUp() {
+        data = SyntheticData.of(2 * n, d);
+        data.distance();
+        c1 = new Cluster();
+        c2 = new Cluster();
+        for (int i = 0; i < n; i++) {
+            c1.addData(2 * i);
+            c2.addData(2 * i + 1);
+        }
+    }
+
+    @Benchmark
+    public double singleLink() {
+        return single.distance(c1, c2, data);
+    }
+
+    @Benchmark
+    public double averageLink() {
+        return average.distance(c1, c2, data);
+    }
+}